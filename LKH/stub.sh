@@ -0,0 +1,23 @@
+#!/bin/sh
+# A stand-in for LKH, used by LKH_ManagerChecker: it reads the PARAMETER_FILE given and
+# writes the tour 1, 2, ..., DIMENSION in its TOUR_FILE. With RUNS = 0 it hangs instead
+# (to check the timeout).
+
+parameters="$1"
+problem=$(sed -n 's/^PROBLEM_FILE = //p' "$parameters")
+tour=$(sed -n 's/^TOUR_FILE = //p' "$parameters")
+runs=$(sed -n 's/^RUNS = //p' "$parameters")
+if [ "$runs" = 0 ]; then
+	exec sleep 60
+fi
+n=$(sed -n 's/^DIMENSION: //p' "$problem")
+{
+	echo "TOUR_SECTION"
+	i=1
+	while [ "$i" -le "$n" ]; do
+		echo "$i"
+		i=$((i + 1))
+	done
+	echo "-1"
+	echo "EOF"
+} > "$tour"
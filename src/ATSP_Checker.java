@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Checks ATSP_LocalSearch on random asymmetric instances:
+ * - up to 8 nodes the tour must be optimal (brute force on every permutation);
+ * - on larger instances the tour must be a permutation; the instances of EXACT + 1 and
+ * EXACT + 2 nodes are compared with the optimum too, and the gap is only reported.
+ * 
+ * Arguments (all optional): instances per size (100), seed (1).
+ * Exits with 1 if a check fails.
+ */
+
+public class ATSP_Checker {
+	
+	public static void main(String[] args) {
+		int instances = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		SplittableRandom random = new SplittableRandom(seed);
+		ATSP_LocalSearch engine = new ATSP_LocalSearch(8, 2, seed);
+		boolean ok = true;
+		
+		for(int n = 1; n <= 8; n ++) {
+			int failures = 0;
+			for(int t = 0; t < instances; t ++) {
+				double[][] d = randomInstance(n, random);
+				ArrayList <Integer> tour = engine.getPermutation(d, 0);
+				if(!isPermutation(tour, n) || cost(d, tour) > bruteForce(d) + ATSP_LocalSearch.EPS)
+					failures ++;
+			}
+			System.out.printf("n = %d: %d / %d not optimal%n", n, failures, instances);
+			ok &= failures == 0;
+		}
+		
+		for(int n = ATSP_LocalSearch.EXACT + 1; n <= ATSP_LocalSearch.EXACT + 2; n ++) {
+			int invalid = 0;
+			int worse = 0;
+			double gap = 0.0;
+			for(int t = 0; t < instances; t ++) {
+				double[][] d = randomInstance(n, random);
+				ArrayList <Integer> tour = engine.getPermutation(d, 0);
+				if(!isPermutation(tour, n)) {
+					invalid ++;
+					continue;
+				}
+				double optimum = cost(d, ATSP_LocalSearch.exact(DistanceMatrix.of(d)));
+				double c = cost(d, tour);
+				if(c > optimum + ATSP_LocalSearch.EPS) {
+					worse ++;
+					gap = Math.max(gap, (c - optimum) / optimum);
+				}
+			}
+			System.out.printf("n = %d (local search): %d invalid, %d / %d not optimal (max gap %.2f%%)%n", n, invalid, worse, instances, 100.0 * gap);
+			ok &= invalid == 0;
+		}
+		
+		for(int n : new int[] {50, 200}) {
+			ArrayList <Integer> tour = engine.getPermutation(randomInstance(n, random), 0);
+			System.out.printf("n = %d (local search): %s%n", n, isPermutation(tour, n) ? "permutation" : "NOT a permutation");
+			ok &= isPermutation(tour, n);
+		}
+		
+		System.out.println(ok ? "OK" : "FAILED");
+		if(!ok)
+			System.exit(1);
+	}
+	
+	private static double[][] randomInstance(int n, SplittableRandom random) {
+		double[][] d = new double[n][n];
+		for(int i = 0; i < n; i ++)
+			for(int j = 0; j < n; j ++)
+				d[i][j] = i == j ? 0.0 : 1.0 + random.nextInt(100);
+		return d;
+	}
+	
+	private static boolean isPermutation(ArrayList <Integer> tour, int n) {
+		if(tour.size() != n)
+			return false;
+		boolean[] seen = new boolean[n];
+		for(int i : tour) {
+			if(i < 0 || i >= n || seen[i])
+				return false;
+			seen[i] = true;
+		}
+		return true;
+	}
+	
+	private static double cost(double[][] d, ArrayList <Integer> tour) {
+		double cost = 0.0;
+		for(int i = 0; i < tour.size(); i ++)
+			cost += d[tour.get(i)][tour.get((i + 1) % tour.size())];
+		return cost;
+	}
+	
+	/**
+	 * The optimum on every tour from 0 (Heap's algorithm on the other nodes).
+	 */
+	
+	private static double bruteForce(double[][] d) {
+		int n = d.length;
+		if(n <= 1)
+			return 0.0;
+		int[] a = new int[n - 1];
+		for(int i = 0; i < n - 1; i ++)
+			a[i] = i + 1;
+		double best = tourCost(d, a);
+		int[] c = new int[n - 1];
+		for(int i = 0; i < n - 1;) {
+			if(c[i] < i) {
+				int j = i % 2 == 0 ? 0 : c[i];
+				int swap = a[j];
+				a[j] = a[i];
+				a[i] = swap;
+				best = Math.min(best, tourCost(d, a));
+				c[i] ++;
+				i = 0;
+			} else
+				c[i ++] = 0;
+		}
+		return best;
+	}
+	
+	private static double tourCost(double[][] d, int[] a) {
+		double cost = d[0][a[0]] + d[a[a.length - 1]][0];
+		for(int i = 0; i + 1 < a.length; i ++)
+			cost += d[a[i]][a[i + 1]];
+		return cost;
+	}
+}
@@ -0,0 +1,59 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Something which solves an asymmetric TSP given by its (full) matrix of distances.
+ */
+
+public interface ATSP_Engine {
+	
+	/*
+	 * The distance which means "no edge".
+	 */
+	
+	public static final double INF = 1E6;
+	
+	/**
+	 * @param distances
+	 * @param timeLimit the maximum time (milliseconds). 0 for no limit.
+	 * @return the tour (a permutation of the nodes, 0-indexed).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	
+	public ArrayList <Integer> getPermutation(double[][] distances, long timeLimit) throws IOException, InterruptedException;
+	
+	public default ArrayList <Integer> getPermutation(double[][] distances) throws IOException, InterruptedException {
+		return getPermutation(distances, 0);
+	}
+	
+	/**
+	 * Solves the ATSP of a (square) DistanceMatrix. By default it is copied into a double[][]: 
+	 * an engine which reads it as it is overrides this.
+	 * 
+	 * @param distances
+	 * @param timeLimit the maximum time (milliseconds). 0 for no limit.
+	 * @return the tour (a permutation of the nodes, 0-indexed).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	
+	public default ArrayList <Integer> getPermutation(DistanceMatrix distances, long timeLimit) throws IOException, InterruptedException {
+		return getPermutation(distances.toArray(), timeLimit);
+	}
+	
+	/**
+	 * Solves the ATSP on a sparse graph (the missing edges are INF). By default the graph is 
+	 * turned into the full matrix.
+	 * 
+	 * @param edges
+	 * @param timeLimit the maximum time (milliseconds). 0 for no limit.
+	 * @return the tour (a permutation of the nodes, 0-indexed).
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	
+	public default ArrayList <Integer> getPermutation(CandidateEdges edges, long timeLimit) throws IOException, InterruptedException {
+		return getPermutation(edges.toMatrix(INF), timeLimit);
+	}
+}
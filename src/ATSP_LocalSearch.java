@@ -0,0 +1,413 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * An in-process ATSP engine (no files, no external process): iterated local search.
+ * 
+ * - The tour is a doubly linked list (next / prev) so that moving a segment costs O(1).
+ * - Local search: Or-opt, i.e. a segment of 1..MAX_SEGMENT nodes is moved (without reversing
+ * it, because the distances are asymmetric) between two consecutive nodes. The new positions
+ * are taken from candidate lists (the nearest successors / predecessors of each node) and
+ * the nodes to (re)examine are kept in a queue (don't look bits).
+ * - Kick: a double bridge (A B C D -> A C B D) on a random part of the tour, which is the
+ * move of segment B after segment C. The kick is kept if the local search which follows
+ * it improves the tour, otherwise every move is undone.
+ * 
+ * Several independent restarts run in parallel and the best tour is returned. Without a
+ * time limit the result depends only on the seed.
+ * 
+ * The instances of at most EXACT nodes are solved exactly (dynamic programming on the 
+ * subsets), where the local search could stop in a local optimum.
+ */
+
+public class ATSP_LocalSearch implements ATSP_Engine {
+	
+	public static final int MAX_SEGMENT = 3;
+	public static final int KICK_SEGMENT = 50; // maximum length of the segments of a kick
+	public static final double EPS = 1E-9;
+	public static final int EXACT = 10; // nodes up to which the tour is optimal
+	
+	int candidates;
+	int restarts;
+	long seed;
+	
+	public ATSP_LocalSearch() {
+		this(8, Runtime.getRuntime().availableProcessors(), 1L);
+	}
+	
+	/**
+	 * @param candidates the length of the candidate lists.
+	 * @param restarts the number of independent searches (run in parallel).
+	 * @param seed
+	 */
+	
+	public ATSP_LocalSearch(int candidates, int restarts, long seed) {
+		this.candidates = candidates;
+		this.restarts = Math.max(1, restarts);
+		this.seed = seed;
+	}
+	
+	public ArrayList <Integer> getPermutation(double[][] distances, long timeLimit) {
+		return getPermutation(DistanceMatrix.of(distances), timeLimit);
+	}
+	
+	/**
+	 * Reads the matrix as it is, without copying it.
+	 */
+	
+	@Override
+	public ArrayList <Integer> getPermutation(DistanceMatrix distances, long timeLimit) {
+		int n = distances.rows();
+		ArrayList <Integer> permutation = new ArrayList <> (n);
+		if(n <= EXACT)
+			return exact(distances);
+		
+		long deadline = timeLimit > 0 && timeLimit < Long.MAX_VALUE / 2000000L ? System.nanoTime() + timeLimit * 1000000L : Long.MAX_VALUE;
+		int k = Math.min(candidates, n - 1);
+		int[][] out = new int[n][];
+		int[][] in = new int[n][];
+		IntStream.range(0, n).parallel().forEach((int i) -> {
+			out[i] = nearest(distances, i, k, true);
+			in[i] = nearest(distances, i, k, false);
+		});
+		
+		SplittableRandom random = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[restarts];
+		for(int r = 0; r < restarts; r ++)
+			randoms[r] = random.split();
+		
+		Search[] searches = new Search[restarts];
+		IntStream.range(0, restarts).parallel().forEach((int r) -> {
+			searches[r] = new Search(distances, out, in, randoms[r]);
+			searches[r].run(deadline);
+		});
+		
+		Search best = searches[0];
+		for(Search s : searches)
+			if(s.cost < best.cost - EPS)
+				best = s;
+		
+		for(int i = 0, node = 0; i < n; i ++, node = best.next[node])
+			permutation.add(node);
+		return permutation;
+	}
+	
+	/**
+	 * The optimal tour (Held-Karp): cost[s][j] is the cost of the cheapest path from 0 which 
+	 * visits the set s of the other nodes and ends in j. O(n^2 2^n), so only for small n.
+	 * 
+	 * @param distances
+	 * @return the tour from 0.
+	 */
+	
+	static ArrayList <Integer> exact(DistanceMatrix distances) {
+		int n = distances.rows();
+		ArrayList <Integer> permutation = new ArrayList <> (n);
+		permutation.add(0);
+		if(n <= 2) {
+			for(int i = 1; i < n; i ++)
+				permutation.add(i);
+			return permutation;
+		}
+		double[][] d = distances.toArray();
+		int m = n - 1; // the nodes 1, ..., n - 1 are the bits 0, ..., n - 2
+		int full = (1 << m) - 1;
+		double[][] cost = new double[1 << m][m];
+		int[][] parent = new int[1 << m][m];
+		for(double[] c : cost)
+			Arrays.fill(c, Double.POSITIVE_INFINITY);
+		for(int j = 0; j < m; j ++)
+			cost[1 << j][j] = d[0][j + 1];
+		for(int s = 1; s <= full; s ++)
+			for(int j = 0; j < m; j ++) {
+				if((s & (1 << j)) == 0 || cost[s][j] == Double.POSITIVE_INFINITY)
+					continue;
+				for(int k = 0; k < m; k ++) {
+					if((s & (1 << k)) != 0)
+						continue;
+					double c = cost[s][j] + d[j + 1][k + 1];
+					if(c < cost[s | (1 << k)][k]) {
+						cost[s | (1 << k)][k] = c;
+						parent[s | (1 << k)][k] = j;
+					}
+				}
+			}
+		int last = 0;
+		for(int j = 1; j < m; j ++)
+			if(cost[full][j] + d[j + 1][0] < cost[full][last] + d[last + 1][0])
+				last = j;
+		int[] tour = new int[m];
+		for(int s = full, j = last, i = m - 1; i >= 0; i --) {
+			tour[i] = j + 1;
+			int p = parent[s][j];
+			s ^= 1 << j;
+			j = p;
+		}
+		for(int node : tour)
+			permutation.add(node);
+		return permutation;
+	}
+	
+	/**
+	 * The k nearest successors (or predecessors) of i.
+	 */
+	
+	private static int[] nearest(DistanceMatrix d, int i, int k, boolean successors) {
+		int[] best = new int[k];
+		double[] bestDistance = new double[k];
+		int found = 0;
+		double[] row = successors ? d.row(i, new double[d.columns()]) : null;
+		for(int j = 0; j < d.rows(); j ++) {
+			if(j == i)
+				continue;
+			double dj = successors ? row[j] : d.get(j, i);
+			if(found == k && dj >= bestDistance[k - 1])
+				continue;
+			int z = found == k ? k - 1 : found ++;
+			for(; z > 0 && dj < bestDistance[z - 1]; z --) {
+				best[z] = best[z - 1];
+				bestDistance[z] = bestDistance[z - 1];
+			}
+			best[z] = j;
+			bestDistance[z] = dj;
+		}
+		return best;
+	}
+	
+	/**
+	 * One restart: nearest neighbour tour from a random node, then local search and kicks.
+	 */
+	
+	private static class Search {
+		final DistanceMatrix d;
+		final int[][] out, in;
+		final SplittableRandom random;
+		final int n;
+		final int[] next, prev;
+		double cost;
+		
+		final int[] queue;
+		final boolean[] queued;
+		int head, tail, queueSize;
+		
+		/*
+		 * The moves done since the last kick: (first, last, old predecessor) of the segment.
+		 */
+		
+		int[] log = new int[3 * 64];
+		int logSize;
+		
+		Search(DistanceMatrix d, int[][] out, int[][] in, SplittableRandom random) {
+			this.d = d;
+			this.out = out;
+			this.in = in;
+			this.random = random;
+			n = d.rows();
+			next = new int[n];
+			prev = new int[n];
+			queue = new int[n];
+			queued = new boolean[n];
+		}
+		
+		void run(long deadline) {
+			build(random.nextInt(n));
+			for(int i = 0; i < n; i ++)
+				push(i);
+			localSearch();
+			logSize = 0;
+			
+			long kicks = 1000L + 20L * n;
+			for(long kick = 0; kick < kicks; kick ++) {
+				if((kick & 15) == 0 && System.nanoTime() > deadline)
+					break;
+				double before = cost;
+				if(!kick())
+					break;
+				localSearch();
+				if(cost < before - EPS)
+					logSize = 0;
+				else
+					undo();
+			}
+			
+			/*
+			 * No drift: the cost is computed again from the tour.
+			 */
+			
+			cost = 0.0;
+			for(int i = 0; i < n; i ++)
+				cost += d.get(i, next[i]);
+		}
+		
+		private void build(int first) {
+			boolean[] visited = new boolean[n];
+			visited[first] = true;
+			int last = first;
+			for(int added = 1; added < n; added ++) {
+				int nearest = -1;
+				for(int c : out[last])
+					if(!visited[c]) {
+						nearest = c;
+						break;
+					}
+				if(nearest == -1)
+					for(int j = 0; j < n; j ++)
+						if(!visited[j] && (nearest == -1 || d.get(last, j) < d.get(last, nearest)))
+							nearest = j;
+				visited[nearest] = true;
+				next[last] = nearest;
+				prev[nearest] = last;
+				cost += d.get(last, nearest);
+				last = nearest;
+			}
+			next[last] = first;
+			prev[first] = last;
+			cost += d.get(last, first);
+		}
+		
+		private void push(int i) {
+			if(queued[i])
+				return;
+			queued[i] = true;
+			queue[tail] = i;
+			tail = (tail + 1) % n;
+			queueSize ++;
+		}
+		
+		private int pop() {
+			int i = queue[head];
+			head = (head + 1) % n;
+			queueSize --;
+			queued[i] = false;
+			return i;
+		}
+		
+		/**
+		 * Moves the segment first..last (in the order of the tour) between after and next[after],
+		 * which must be outside the segment.
+		 */
+		
+		private void move(int first, int last, int after) {
+			if(logSize + 3 > log.length)
+				log = Arrays.copyOf(log, 2 * log.length);
+			log[logSize ++] = first;
+			log[logSize ++] = last;
+			log[logSize ++] = prev[first];
+			relink(first, last, after);
+		}
+		
+		private void relink(int first, int last, int after) {
+			int p = prev[first];
+			int nx = next[last];
+			cost -= d.get(p, first) + d.get(last, nx) - d.get(p, nx);
+			next[p] = nx;
+			prev[nx] = p;
+			
+			int before = next[after];
+			cost += d.get(after, first) + d.get(last, before) - d.get(after, before);
+			next[after] = first;
+			prev[first] = after;
+			next[last] = before;
+			prev[before] = last;
+		}
+		
+		private void undo() {
+			while(logSize > 0) {
+				int p = log[-- logSize];
+				int last = log[-- logSize];
+				int first = log[-- logSize];
+				relink(first, last, p);
+			}
+		}
+		
+		private boolean inSegment(int c, int first, int length) {
+			for(int i = 0, z = first; i < length; i ++, z = next[z])
+				if(z == c)
+					return true;
+			return false;
+		}
+		
+		/**
+		 * Or-opt with first improvement until no node is in the queue.
+		 */
+		
+		private void localSearch() {
+			while(queueSize > 0) {
+				int a = pop();
+				int b = a;
+				for(int length = 1; length <= MAX_SEGMENT && length < n - 2; length ++, b = next[b]) {
+					int p = prev[a];
+					int nx = next[b];
+					double removeGain = d.get(p, a) + d.get(b, nx) - d.get(p, nx);
+					
+					int bestAfter = -1;
+					double bestGain = EPS;
+					for(int c : in[a]) { // c -> a is short
+						if(c == p || inSegment(c, a, length))
+							continue;
+						int c2 = next[c];
+						double gain = removeGain - (d.get(c, a) + d.get(b, c2) - d.get(c, c2));
+						if(gain > bestGain) {
+							bestGain = gain;
+							bestAfter = c;
+						}
+					}
+					for(int c2 : out[b]) { // b -> c2 is short
+						int c = prev[c2];
+						if(c == p || inSegment(c, a, length))
+							continue;
+						double gain = removeGain - (d.get(c, a) + d.get(b, c2) - d.get(c, c2));
+						if(gain > bestGain) {
+							bestGain = gain;
+							bestAfter = c;
+						}
+					}
+					if(bestAfter == -1)
+						continue;
+					
+					int c2 = next[bestAfter];
+					move(a, b, bestAfter);
+					push(p);
+					push(nx);
+					push(a);
+					push(b);
+					push(bestAfter);
+					push(c2);
+					break;
+				}
+			}
+		}
+		
+		/**
+		 * A double bridge on a random part of the tour: x B C y -> x C B y.
+		 * 
+		 * @return false if the tour is too short.
+		 */
+		
+		private boolean kick() {
+			int maxLength = Math.min(KICK_SEGMENT, (n - 2) / 2);
+			if(maxLength < 1)
+				return false;
+			int x = random.nextInt(n);
+			int b1 = next[x];
+			int b2 = b1;
+			for(int i = random.nextInt(maxLength); i > 0; i --)
+				b2 = next[b2];
+			int c1 = next[b2];
+			int c2 = c1;
+			for(int i = random.nextInt(maxLength); i > 0; i --)
+				c2 = next[c2];
+			int y = next[c2];
+			move(b1, b2, c2);
+			push(x);
+			push(b1);
+			push(b2);
+			push(c1);
+			push(c2);
+			push(y);
+			return true;
+		}
+	}
+}
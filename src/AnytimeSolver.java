@@ -0,0 +1,24 @@
+/**
+ * A solver which can be stopped at any time: it publishes every improvement of its best 
+ * path to a listener and, when the budget runs out (or the token is cancelled), it returns 
+ * the best path found so far.
+ * 
+ * The budget is checked between two steps of the solver (which are not interrupted), so 
+ * it can be exceeded by the length of one step.
+ */
+
+public interface AnytimeSolver extends Solver {
+	
+	/**
+	 * @param budget the wall-clock time available (milliseconds).
+	 * @param token can be null.
+	 * @param listener can be null.
+	 * @return the best path found.
+	 */
+	
+	public Path solve(long budget, CancellationToken token, IncumbentListener listener);
+	
+	public default Path solve(long budget) {
+		return solve(budget, null, null);
+	}
+}
@@ -0,0 +1,184 @@
+import java.util.SplittableRandom;
+
+/**
+ * Checks LAPJV and AuctionAlgorithm against HungarianEngine on random instances:
+ * - dense square and rectangular matrices, as double[][] and as DistanceMatrix;
+ * - a sequence of similar problems solved with a warm start (LAPJV);
+ * - sparse graphs (CandidateEdges) which contain a perfect matching;
+ * - HungarianEngine on a DistanceMatrix of every storage against the double[][] one.
+ * Every assignment must be valid and cost as much as the Hungarian one (the auction within
+ * its tolerance).
+ * 
+ * Arguments (all optional): instances per case (50), seed (1).
+ * Exits with 1 if a check fails.
+ */
+
+public class AssignmentChecker {
+	
+	static final double TOLERANCE = 1E-6;
+	
+	static int instances;
+	static int failures;
+	
+	public static void main(String[] args) {
+		instances = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		SplittableRandom random = new SplittableRandom(seed);
+		AssignmentEngine hungarian = new HungarianEngine();
+		AssignmentEngine[] engines = {new LAPJV(), new AuctionAlgorithm(TOLERANCE, false), new AuctionAlgorithm(TOLERANCE, true)};
+		String[] names = {"LAPJV", "auction", "parallel auction"};
+		
+		for(int e = 0; e < engines.length; e ++) {
+			int before = failures;
+			for(int t = 0; t < instances; t ++) {
+				int rows = 1 + random.nextInt(60);
+				int columns = t % 3 == 0 ? rows : 1 + random.nextInt(60);
+				double[][] c = randomMatrix(rows, columns, t % 2 == 0, random);
+				double optimum = cost(c, hungarian.getAssignment(copy(c)));
+				check(names[e] + " double[][]", c, engines[e].getAssignment(copy(c)), optimum);
+				check(names[e] + " DistanceMatrix", c, engines[e].getAssignment(DistanceMatrix.of(copy(c))), optimum);
+			}
+			for(int t = 0; t < instances; t ++) {
+				int n = 1 + random.nextInt(60);
+				CandidateEdges edges = randomGraph(n, 1 + random.nextInt(5), random);
+				double[][] c = edges.toMatrix(AssignmentEngine.INF);
+				int[] assignment = engines[e].getAssignment(edges);
+				if(assignment == null) {
+					System.out.println(names[e] + " CandidateEdges: no assignment on a graph with a perfect matching");
+					failures ++;
+				} else
+					check(names[e] + " CandidateEdges", c, assignment, cost(c, hungarian.getAssignment(copy(c))));
+			}
+			System.out.printf("%s: %d failures%n", names[e], failures - before);
+		}
+		
+		/*
+		 * The warm start: a cell (key) per row and per column, costs which change a little from
+		 * a problem to the next one.
+		 */
+		
+		int before = failures;
+		for(int t = 0; t < instances; t ++) {
+			int n = 2 + random.nextInt(40);
+			WarmStart warmStart = new WarmStart(2 * n);
+			int[] rowKeys = new int[n];
+			int[] columnKeys = new int[n];
+			for(int i = 0; i < n; i ++) {
+				rowKeys[i] = i;
+				columnKeys[i] = n + i;
+			}
+			double[][] c = randomMatrix(n, n, false, random);
+			for(int step = 0; step < 5; step ++) {
+				for(int k = 0; k < n; k ++)
+					c[random.nextInt(n)][random.nextInt(n)] = random.nextDouble() * 100.0;
+				double optimum = cost(c, hungarian.getAssignment(copy(c)));
+				check("LAPJV warm start", c, new LAPJV().getAssignment(copy(c), rowKeys, columnKeys, warmStart), optimum);
+			}
+		}
+		System.out.printf("LAPJV warm start: %d failures%n", failures - before);
+		
+		/*
+		 * HungarianEngine copies the DistanceMatrix into its own square matrix, whatever the 
+		 * storage (AUTO would not go off heap for it: it does not read the rows).
+		 */
+		
+		before = failures;
+		if(hungarian.readsRows() || DistanceMatrix.Storage.AUTO.forEngine(false) != DistanceMatrix.Storage.DOUBLE) {
+			System.out.println("Hungarian: AUTO is not DOUBLE for an engine which copies the matrix");
+			failures ++;
+		}
+		for(int t = 0; t < instances; t ++) {
+			int rows = 1 + random.nextInt(60);
+			int columns = t % 3 == 0 ? rows : 1 + random.nextInt(60);
+			double[][] c = randomMatrix(rows, columns, t % 2 == 0, random);
+			double optimum = cost(c, hungarian.getAssignment(copy(c)));
+			for(DistanceMatrix.Storage storage : DistanceMatrix.Storage.values())
+				if(storage != DistanceMatrix.Storage.FLOAT) // it rounds the costs
+					check("Hungarian " + storage, c, hungarian.getAssignment(DistanceMatrix.create(rows, columns, (int i, int j) -> c[i][j], storage)), optimum);
+		}
+		System.out.printf("Hungarian DistanceMatrix: %d failures%n", failures - before);
+		
+		System.out.println(failures == 0 ? "OK" : "FAILED");
+		if(failures > 0)
+			System.exit(1);
+	}
+	
+	private static void check(String name, double[][] c, int[] assignment, double optimum) {
+		int rows = c.length;
+		int columns = c[0].length;
+		boolean valid = assignment != null && assignment.length == rows;
+		boolean[] taken = new boolean[columns];
+		int assigned = 0;
+		for(int i = 0; valid && i < rows; i ++) {
+			int j = assignment[i];
+			if(j == -1)
+				continue;
+			valid = j >= 0 && j < columns && !taken[j];
+			if(valid)
+				taken[j] = true;
+			assigned ++;
+		}
+		valid &= assigned == Math.min(rows, columns);
+		if(!valid) {
+			System.out.println(name + ": invalid assignment (" + rows + " x " + columns + ")");
+			failures ++;
+		} else if(Math.abs(cost(c, assignment) - optimum) > TOLERANCE * 10 + 1E-9 * Math.abs(optimum)) {
+			System.out.printf("%s: cost %.9f instead of %.9f (%d x %d)%n", name, cost(c, assignment), optimum, rows, columns);
+			failures ++;
+		}
+	}
+	
+	/**
+	 * Integral costs (with many ties) or real ones.
+	 */
+	
+	private static double[][] randomMatrix(int rows, int columns, boolean integral, SplittableRandom random) {
+		double[][] c = new double[rows][columns];
+		for(int i = 0; i < rows; i ++)
+			for(int j = 0; j < columns; j ++)
+				c[i][j] = integral ? random.nextInt(20) : random.nextDouble() * 100.0;
+		return c;
+	}
+	
+	/**
+	 * A random permutation (so a perfect matching) and k more random edges per row.
+	 */
+	
+	private static CandidateEdges randomGraph(int n, int k, SplittableRandom random) {
+		int[] permutation = new int[n];
+		for(int i = 0; i < n; i ++) {
+			int j = random.nextInt(i + 1);
+			permutation[i] = permutation[j];
+			permutation[j] = i;
+		}
+		int m = n * (k + 1);
+		int[] from = new int[m];
+		int[] to = new int[m];
+		double[] weight = new double[m];
+		for(int e = 0; e < m; e ++) {
+			from[e] = e % n;
+			to[e] = e < n ? permutation[e] : random.nextInt(n);
+			weight[e] = random.nextDouble() * 100.0;
+		}
+		return new CandidateEdges(n, from, to, weight, m);
+	}
+	
+	private static double cost(double[][] c, int[] assignment) {
+		double cost = 0.0;
+		for(int i = 0; i < assignment.length; i ++)
+			if(assignment[i] != -1)
+				cost += c[i][assignment[i]];
+		return cost;
+	}
+	
+	/**
+	 * The engines may modify the matrix they are given.
+	 */
+	
+	private static double[][] copy(double[][] c) {
+		double[][] copy = new double[c.length][];
+		for(int i = 0; i < c.length; i ++)
+			copy[i] = c[i].clone();
+		return copy;
+	}
+}
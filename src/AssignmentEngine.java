@@ -0,0 +1,121 @@
+/**
+ * Something which solves the linear assignment problem: given the cost of assigning each row
+ * (worker) to each column (job), a minimum cost matching of the rows to the columns.
+ */
+
+public interface AssignmentEngine {
+	
+	/*
+	 * The cost which means "no edge".
+	 */
+	
+	public static final double INF = 1E6;
+	
+	/**
+	 * @param costs costs[i][j] is the cost of assigning row i to column j.
+	 * @return for each row its column (-1 if the row is unassigned, only when rows > columns).
+	 */
+	
+	public int[] getAssignment(double[][] costs);
+	
+	/**
+	 * Solves the problem on a DistanceMatrix. By default it is copied into a double[][]: an 
+	 * engine which reads it as it is overrides this.
+	 * 
+	 * @param costs
+	 * @return for each row its column (-1 if the row is unassigned).
+	 */
+	
+	public default int[] getAssignment(DistanceMatrix costs) {
+		return getAssignment(costs.toArray());
+	}
+	
+	/**
+	 * If the engine reads a DistanceMatrix as it is (by rows), so that its storage is the only 
+	 * copy of the matrix. The other engines copy it into the heap: there the storage AUTO must 
+	 * stay DOUBLE (see DistanceMatrix.Storage.forEngine).
+	 * 
+	 * @return false by default.
+	 */
+	
+	public default boolean readsRows() {
+		return false;
+	}
+	
+	/**
+	 * Solves the problem on a sparse graph (edges from the rows to the columns, the missing
+	 * ones are INF). By default the graph is turned into the full matrix. An engine which
+	 * works on the graph returns null if the graph has no perfect matching.
+	 * 
+	 * @param edges
+	 * @return for each row its column, or null.
+	 */
+	
+	public default int[] getAssignment(CandidateEdges edges) {
+		return getAssignment(edges.toMatrix(INF));
+	}
+	
+	/**
+	 * Solves costs starting from what warmStart remembers of the last problem solved with it 
+	 * (rows and columns are identified across the problems by their keys, -1 for none), and 
+	 * then updates it. By default the warm start is ignored.
+	 * 
+	 * @param costs
+	 * @param rowKeys
+	 * @param columnKeys
+	 * @param warmStart
+	 * @return for each row its column.
+	 */
+	
+	public default int[] getAssignment(double[][] costs, int[] rowKeys, int[] columnKeys, WarmStart warmStart) {
+		return getAssignment(costs);
+	}
+	
+	public default int[] getAssignment(DistanceMatrix costs, int[] rowKeys, int[] columnKeys, WarmStart warmStart) {
+		return getAssignment(costs);
+	}
+	
+	/**
+	 * If the engine uses the warm starts: the others ignore them, so nobody should allocate 
+	 * them (they have a slot per key).
+	 * 
+	 * @return false by default.
+	 */
+	
+	public default boolean supportsWarmStart() {
+		return false;
+	}
+	
+	/**
+	 * The square matrix of the problem: the missing rows (or columns) cost 0.
+	 * 
+	 * @param costs
+	 * @return costs itself if it is already square.
+	 */
+	
+	public static double[][] square(double[][] costs) {
+		int rows = costs.length;
+		int columns = costs[0].length;
+		for(double[] row : costs)
+			if(row.length != columns)
+				throw new IllegalArgumentException("Irregular cost matrix");
+		if(rows == columns)
+			return costs;
+		int n = Math.max(rows, columns);
+		double[][] square = new double[n][n];
+		for(int i = 0; i < rows; i ++)
+			System.arraycopy(costs[i], 0, square[i], 0, columns);
+		return square;
+	}
+	
+	/**
+	 * The assignment of the rows of costs from the one of square(costs).
+	 */
+	
+	public static int[] truncate(int[] assignment, int rows, int columns) {
+		int[] result = new int[rows];
+		for(int i = 0; i < rows; i ++)
+			result[i] = assignment[i] < columns ? assignment[i] : -1;
+		return result;
+	}
+}
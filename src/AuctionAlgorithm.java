@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The auction algorithm (Bertsekas) with epsilon scaling for the linear assignment problem.
+ * 
+ * The rows (persons) bid for the columns (objects): an unassigned row bids for its best column
+ * (the one with the lowest cost + price) raising its price by the gap to the second best
+ * column + epsilon, and the highest bid of each column wins. At the end of a phase every row
+ * is assigned within epsilon of its best column, so the total cost is at most the optimum +
+ * n * epsilon; epsilon is divided by SCALING_FACTOR at every phase (keeping the prices) until
+ * n * epsilon <= tolerance.
+ * 
+ * The bids of a round are computed all together (Jacobi) from the same prices, so they can be
+ * computed in parallel; then they are resolved in the order of the rows, so the result does
+ * not depend on the threads.
+ * 
+ * On a sparse graph a row bids only on its edges. If the graph has no perfect matching the
+ * prices grow without limit: it is detected with a bound on the prices and null is returned.
+ */
+
+public class AuctionAlgorithm implements AssignmentEngine {
+	
+	public static final double SCALING_FACTOR = 4.0;
+	public static final int PARALLEL_THRESHOLD = 1024; // the rounds with fewer bids are sequential
+	
+	double tolerance;
+	boolean parallel;
+	
+	public AuctionAlgorithm() {
+		this(1E-6, true);
+	}
+	
+	/**
+	 * @param tolerance the maximum gap between the cost found and the optimum.
+	 * @param parallel if the bids of a round are computed in parallel.
+	 */
+	
+	public AuctionAlgorithm(double tolerance, boolean parallel) {
+		this.tolerance = tolerance;
+		this.parallel = parallel;
+	}
+	
+	public int[] getAssignment(double[][] costs) {
+		if(costs.length == 0)
+			return new int[0];
+		double[][] c = AssignmentEngine.square(costs);
+		int[] x = new Auction(c.length, DistanceMatrix.of(c), null).run();
+		return AssignmentEngine.truncate(x, costs.length, costs[0].length);
+	}
+	
+	public boolean readsRows() {
+		return true;
+	}
+	
+	/**
+	 * Reads the matrix as it is (by rows), without copying it.
+	 */
+	
+	public int[] getAssignment(DistanceMatrix costs) {
+		if(costs.rows() == 0)
+			return new int[0];
+		DistanceMatrix c = DistanceMatrix.square(costs);
+		int[] x = new Auction(c.rows(), c, null).run();
+		return AssignmentEngine.truncate(x, costs.rows(), costs.columns());
+	}
+	
+	/**
+	 * @return for each row its column, null if the graph has no perfect matching.
+	 */
+	
+	public int[] getAssignment(CandidateEdges edges) {
+		for(int i = 0; i < edges.size(); i ++)
+			if(edges.first[i] == edges.first[i + 1])
+				return null;
+		return new Auction(edges.size(), null, edges).run();
+	}
+	
+	/**
+	 * One solution: either c (full matrix) or g (graph) is null.
+	 */
+	
+	private class Auction {
+		final int n;
+		final DistanceMatrix c;
+		final CandidateEdges g;
+		final ThreadLocal <double[]> buffer; // for the rows of c which are not arrays
+		final double[] price;
+		final int[] owner; // the row of each column (-1 if none)
+		final int[] assigned; // the column of each row (-1 if none)
+		double range; // max cost - min cost
+		double epsilon;
+		
+		/*
+		 * The bids of a round: bidders[k] bids bidPrice[k] for bidObject[k].
+		 */
+		
+		int[] bidders, nextBidders;
+		final int[] bidObject;
+		final double[] bidPrice;
+		final double[] bestBid;
+		final int[] bestBidder;
+		
+		Auction(int n, DistanceMatrix c, CandidateEdges g) {
+			this.n = n;
+			this.c = c;
+			this.g = g;
+			buffer = ThreadLocal.withInitial(() -> new double[n]);
+			price = new double[n];
+			owner = new int[n];
+			assigned = new int[n];
+			bidders = new int[n];
+			nextBidders = new int[n];
+			bidObject = new int[n];
+			bidPrice = new double[n];
+			bestBid = new double[n];
+			bestBidder = new int[n];
+			Arrays.fill(bestBidder, -1);
+			
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			if(c != null)
+				for(int i = 0; i < n; i ++)
+					for(double cost : c.row(i, buffer.get())) {
+						min = Math.min(min, cost);
+						max = Math.max(max, cost);
+					}
+			else
+				for(double cost : g.weight) {
+					min = Math.min(min, cost);
+					max = Math.max(max, cost);
+				}
+			range = n == 0 ? 0.0 : max - min;
+		}
+		
+		int[] run() {
+			double finalEpsilon = Math.max(tolerance / Math.max(1, n), Math.ulp(range) * n);
+			epsilon = Math.max(range / SCALING_FACTOR, finalEpsilon);
+			if(!(epsilon > 0.0))
+				epsilon = Double.MIN_NORMAL;
+			while(true) {
+				if(!phase())
+					return null;
+				if(epsilon <= finalEpsilon)
+					return assigned;
+				epsilon = Math.max(epsilon / SCALING_FACTOR, finalEpsilon);
+			}
+		}
+		
+		/**
+		 * @return false if the prices exceed the bound of a feasible problem.
+		 */
+		
+		private boolean phase() {
+			Arrays.fill(owner, -1);
+			Arrays.fill(assigned, -1);
+			double maxPrice = 0.0;
+			for(double p : price)
+				maxPrice = Math.max(maxPrice, p);
+			double limit = maxPrice + 4.0 * (n + 1) * (range + epsilon);
+			
+			int count = n;
+			for(int i = 0; i < n; i ++)
+				bidders[i] = i;
+			while(count > 0) {
+				IntStream round = IntStream.range(0, count);
+				if(parallel && count >= PARALLEL_THRESHOLD)
+					round = round.parallel();
+				round.forEach(this::bid);
+				
+				for(int k = 0; k < count; k ++) {
+					int j = bidObject[k];
+					if(bestBidder[j] == -1 || bidPrice[k] > bestBid[j]) {
+						bestBid[j] = bidPrice[k];
+						bestBidder[j] = bidders[k];
+					}
+				}
+				int next = 0;
+				for(int k = 0; k < count; k ++) {
+					int j = bidObject[k];
+					int i = bidders[k];
+					if(bestBidder[j] != i) {
+						nextBidders[next ++] = i;
+						continue;
+					}
+					price[j] = bestBid[j];
+					if(price[j] > limit)
+						return false;
+					if(owner[j] >= 0) {
+						assigned[owner[j]] = -1;
+						nextBidders[next ++] = owner[j];
+					}
+					owner[j] = i;
+					assigned[i] = j;
+				}
+				for(int k = 0; k < count; k ++)
+					bestBidder[bidObject[k]] = -1;
+				
+				int[] swap = bidders;
+				bidders = nextBidders;
+				nextBidders = swap;
+				count = next;
+			}
+			return true;
+		}
+		
+		/**
+		 * The bid of bidders[k]: its best column (lowest cost + price, the first one if
+		 * tied) and the price which makes it as good as the second best - epsilon.
+		 */
+		
+		private void bid(int k) {
+			int i = bidders[k];
+			double best = Double.NEGATIVE_INFINITY;
+			double second = Double.NEGATIVE_INFINITY;
+			int bestColumn = -1;
+			if(c != null) {
+				double[] row = c.row(i, buffer.get());
+				for(int j = 0; j < n; j ++) {
+					double value = -row[j] - price[j];
+					if(value > best) {
+						second = best;
+						best = value;
+						bestColumn = j;
+					} else if(value > second)
+						second = value;
+				}
+			} else
+				for(int e = g.first[i]; e < g.first[i + 1]; e ++) {
+					int j = g.to[e];
+					double value = -g.weight[e] - price[j];
+					if(value > best) {
+						second = best;
+						best = value;
+						bestColumn = j;
+					} else if(value > second)
+						second = value;
+				}
+			
+			/*
+			 * A row with a single edge: it would pay anything for it, but the price is not
+			 * raised more than needed in a feasible problem.
+			 */
+			
+			if(second == Double.NEGATIVE_INFINITY)
+				second = best - range;
+			bidObject[k] = bestColumn;
+			bidPrice[k] = price[bestColumn] + (best - second) + epsilon;
+		}
+	}
+}
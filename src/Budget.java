@@ -0,0 +1,33 @@
+/**
+ * A wall-clock deadline plus an optional cancellation token.
+ */
+
+public class Budget {
+	
+	final long deadline; // System.nanoTime() (Long.MAX_VALUE for no deadline)
+	final CancellationToken token;
+	
+	/**
+	 * @param millis the time available from now.
+	 * @param token can be null.
+	 */
+	
+	public Budget(long millis, CancellationToken token) {
+		this.deadline = millis >= Long.MAX_VALUE / 2000000L ? Long.MAX_VALUE : System.nanoTime() + millis * 1000000L;
+		this.token = token;
+	}
+	
+	public boolean isOver() {
+		return (token != null && token.isCancelled()) || remaining() <= 0;
+	}
+	
+	/**
+	 * @return the milliseconds left (0 if the deadline has passed).
+	 */
+	
+	public long remaining() {
+		if(deadline == Long.MAX_VALUE)
+			return Long.MAX_VALUE;
+		return Math.max(0L, (deadline - System.nanoTime()) / 1000000L);
+	}
+}
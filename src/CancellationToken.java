@@ -0,0 +1,17 @@
+/**
+ * Lets another thread stop an anytime solver: the solver checks it between two steps and 
+ * returns the best path found so far.
+ */
+
+public class CancellationToken {
+	
+	private volatile boolean cancelled;
+	
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
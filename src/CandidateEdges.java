@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * A sparse (directed) graph for the ATSP: for each node only some candidate edges are kept.
+ * The edges are stored by origin (compressed rows): the edges from i are
+ * to[first[i]], ..., to[first[i + 1] - 1] with the same positions in weight.
+ */
+
+public class CandidateEdges {
+	
+	final int n;
+	final int[] first;
+	final int[] to;
+	final double[] weight;
+	
+	/**
+	 * @param n the number of nodes.
+	 * @param from
+	 * @param to
+	 * @param weight
+	 * @param m the number of edges in from, to and weight (duplicates are removed).
+	 */
+	
+	public CandidateEdges(int n, int[] from, int[] to, double[] weight, int m) {
+		this.n = n;
+		
+		/*
+		 * Counting sort by origin...
+		 */
+		
+		int[] start = new int[n + 1];
+		for(int e = 0; e < m; e ++)
+			start[from[e] + 1] ++;
+		for(int i = 0; i < n; i ++)
+			start[i + 1] += start[i];
+		int[] position = Arrays.copyOf(start, n);
+		int[] sortedTo = new int[m];
+		double[] sortedWeight = new double[m];
+		for(int e = 0; e < m; e ++) {
+			int k = position[from[e]] ++;
+			sortedTo[k] = to[e];
+			sortedWeight[k] = weight[e];
+		}
+		
+		/*
+		 * ... then every row (short) is sorted by destination to remove the duplicates.
+		 */
+		
+		first = new int[n + 1];
+		int size = 0;
+		for(int i = 0; i < n; i ++) {
+			first[i] = size;
+			for(int k = start[i]; k < start[i + 1]; k ++) {
+				int t = sortedTo[k];
+				double w = sortedWeight[k];
+				int z = size;
+				while(z > first[i] && sortedTo[z - 1] > t)
+					z --;
+				if(z > first[i] && sortedTo[z - 1] == t)
+					continue;
+				System.arraycopy(sortedTo, z, sortedTo, z + 1, size - z);
+				System.arraycopy(sortedWeight, z, sortedWeight, z + 1, size - z);
+				sortedTo[z] = t;
+				sortedWeight[z] = w;
+				size ++;
+			}
+		}
+		first[n] = size;
+		this.to = Arrays.copyOf(sortedTo, size);
+		this.weight = Arrays.copyOf(sortedWeight, size);
+	}
+	
+	public int size() {
+		return n;
+	}
+	
+	public int numberOfEdges() {
+		return to.length;
+	}
+	
+	/**
+	 * @param i
+	 * @param j
+	 * @return the position of the edge i -> j, -1 if it is missing.
+	 */
+	
+	public int find(int i, int j) {
+		int e = Arrays.binarySearch(to, first[i], first[i + 1], j);
+		return e >= 0 ? e : -1;
+	}
+	
+	/**
+	 * The bipartite graph between two lists of chains (rows from, columns to, with as many 
+	 * chains): the edges from each chain of from to the k chains of to whose first coordinates 
+	 * are the nearest to its last coordinates, and the edges to each chain of to from the k 
+	 * chains of from whose last coordinates are the nearest to its first coordinates.
+	 * 
+	 * With matching the edges of a greedy matching (each chain of from takes the nearest chain 
+	 * of to still free) are added too, so that the graph has a perfect matching.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param k
+	 * @param matching
+	 * @return the graph (O(n * k) edges).
+	 */
+	
+	public static CandidateEdges nearest(ChainEndpoints from, ChainEndpoints to, int k, boolean matching) {
+		int n = from.size();
+		double[] lastX = from.lastX;
+		double[] lastY = from.lastY;
+		double[] firstX = to.firstX;
+		double[] firstY = to.firstY;
+		SpatialIndex lasts = new SpatialIndex(lastX, lastY);
+		SpatialIndex firsts = new SpatialIndex(firstX, firstY);
+		for(int i = 0; i < n; i ++) {
+			lasts.add(i);
+			firsts.add(i);
+		}
+		
+		int[] rows = new int[(2 * k + 1) * n];
+		int[] columns = new int[(2 * k + 1) * n];
+		double[] weight = new double[(2 * k + 1) * n];
+		int m = 0;
+		for(int i = 0; i < n; i ++) {
+			for(int j : firsts.nearest(lastX[i], lastY[i], k)) {
+				if(j == -1)
+					break;
+				rows[m] = i;
+				columns[m] = j;
+				weight[m ++] = from.distance(i, to, j);
+			}
+			for(int j : lasts.nearest(firstX[i], firstY[i], k)) {
+				if(j == -1)
+					break;
+				rows[m] = j;
+				columns[m] = i;
+				weight[m ++] = from.distance(j, to, i);
+			}
+		}
+		if(matching)
+			for(int i = 0; i < n; i ++) {
+				int j = firsts.nearest(lastX[i], lastY[i]);
+				firsts.remove(j);
+				rows[m] = i;
+				columns[m] = j;
+				weight[m ++] = from.distance(i, to, j);
+			}
+		return new CandidateEdges(n, rows, columns, weight, m);
+	}
+	
+	/**
+	 * The directed graph of the ATSP between two sets of n chains: the nodes 0, ..., n - 1 
+	 * are the first set and n, ..., 2n - 1 the second one.
+	 * 
+	 * @param forward the edges from the first set to the second one.
+	 * @param backward the edges from the second set to the first one.
+	 * @return the graph with both.
+	 */
+	
+	public static CandidateEdges alternating(CandidateEdges forward, CandidateEdges backward) {
+		int n = forward.size();
+		int m = forward.numberOfEdges() + backward.numberOfEdges();
+		int[] from = new int[m];
+		int[] to = new int[m];
+		double[] weight = new double[m];
+		int e = 0;
+		for(int i = 0; i < n; i ++)
+			for(int f = forward.first[i]; f < forward.first[i + 1]; f ++) {
+				from[e] = i;
+				to[e] = n + forward.to[f];
+				weight[e ++] = forward.weight[f];
+			}
+		for(int i = 0; i < n; i ++)
+			for(int f = backward.first[i]; f < backward.first[i + 1]; f ++) {
+				from[e] = n + i;
+				to[e] = backward.to[f];
+				weight[e ++] = backward.weight[f];
+			}
+		return new CandidateEdges(2 * n, from, to, weight, m);
+	}
+	
+	/**
+	 * The weight of the edge i -> j.
+	 * 
+	 * @param i
+	 * @param j
+	 * @param inf
+	 * @return the weight, inf if the edge is missing.
+	 */
+	
+	public double get(int i, int j, double inf) {
+		int e = find(i, j);
+		return e >= 0 ? weight[e] : inf;
+	}
+	
+	/**
+	 * The matrix with inf for the missing edges as a view of the graph: a row is filled in 
+	 * the buffer when it is read, so the n^2 entries are never stored.
+	 * 
+	 * @param inf
+	 * @return the matrix.
+	 */
+	
+	public DistanceMatrix asMatrix(double inf) {
+		return new DistanceMatrix() {
+			public int rows() {
+				return n;
+			}
+			
+			public int columns() {
+				return n;
+			}
+			
+			public double get(int i, int j) {
+				return CandidateEdges.this.get(i, j, inf);
+			}
+			
+			public double[] row(int i, double[] buffer) {
+				Arrays.fill(buffer, 0, n, inf);
+				for(int e = first[i]; e < first[i + 1]; e ++)
+					buffer[to[e]] = weight[e];
+				return buffer;
+			}
+		};
+	}
+	
+	/**
+	 * The dense matrix with inf for the missing edges.
+	 * 
+	 * @param inf
+	 * @return the matrix.
+	 */
+	
+	public double[][] toMatrix(double inf) {
+		double[][] matrix = new double[n][n];
+		for(int i = 0; i < n; i ++) {
+			Arrays.fill(matrix[i], inf);
+			for(int e = first[i]; e < first[i + 1]; e ++)
+				matrix[i][to[e]] = weight[e];
+		}
+		return matrix;
+	}
+}
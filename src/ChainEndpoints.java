@@ -0,0 +1,67 @@
+import java.util.List;
+
+/**
+ * The first and the last coordinates of a list of chains, in primitive arrays: the matrices
+ * of distances and the improvements of the sequence of the chains read only these four
+ * arrays (no Truck, no Path), so they allocate nothing and stay in cache.
+ * 
+ * The distances are the ones of Truck.distance: from the last coordinates of a chain to the
+ * first coordinates of the next one, 0 if they are the same point.
+ */
+
+public class ChainEndpoints {
+	
+	final double[] firstX, firstY;
+	final double[] lastX, lastY;
+	
+	public ChainEndpoints(List <Truck> chains) {
+		int n = chains.size();
+		firstX = new double[n];
+		firstY = new double[n];
+		lastX = new double[n];
+		lastY = new double[n];
+		for(int i = 0; i < n; i ++) {
+			Path p = chains.get(i).path;
+			firstX[i] = p.getFirstX();
+			firstY[i] = p.getFirstY();
+			lastX[i] = p.getLastX();
+			lastY[i] = p.getLastY();
+		}
+	}
+	
+	public int size() {
+		return firstX.length;
+	}
+	
+	public static double distance(double fromX, double fromY, double toX, double toY) {
+		double dx = fromX - toX;
+		double dy = fromY - toY;
+		if(Math.abs(dx) < Vector2D.MAX_ERROR_COOR && Math.abs(dy) < Vector2D.MAX_ERROR_COOR)
+			return 0.0;
+		return Geometry.norm(dx, dy);
+	}
+	
+	/**
+	 * From the end of the chain i to the beginning of the chain j.
+	 */
+	
+	public double distance(int i, int j) {
+		return distance(lastX[i], lastY[i], firstX[j], firstY[j]);
+	}
+	
+	/**
+	 * From the end of the chain i to the beginning of the chain j of to.
+	 */
+	
+	public double distance(int i, ChainEndpoints to, int j) {
+		return distance(lastX[i], lastY[i], to.firstX[j], to.firstY[j]);
+	}
+	
+	/**
+	 * From (x, y) to the beginning of the chain j.
+	 */
+	
+	public double distance(double x, double y, int j) {
+		return distance(x, y, firstX[j], firstY[j]);
+	}
+}
@@ -0,0 +1,394 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Local search on the sequence of the chains (peak, hole, peak, hole, ...) which the truck
+ * follows from its position: the cost is the sum of the distances from the end of a chain to
+ * the beginning of the next one. Three moves keep the alternation:
+ * - Or-opt: a segment of even length (up to MAX_SEGMENT chains) is moved between two other
+ * chains, without reversing it.
+ * - 2-opt: a segment of odd length (it starts and ends with the same type) is reversed. The
+ * distances are asymmetric, so the reversed segment costs differently: it is computed in
+ * O(1) from the prefix sums of the distances forward and backward.
+ * - Swap of two chains of the same type.
+ * 
+ * Every move is tried only if one of its new links is in the candidate lists (the k nearest
+ * chains of the other type, after and before each chain), and only for the chains whose
+ * neighbourhood has changed (don't look bits: a queue of chains). It stops at a local
+ * optimum (a whole pass on the chains without moves) or when the time limit is over.
+ */
+
+public class ChainSequencer {
+	
+	public static final int MAX_SEGMENT = 4;
+	public static final double EPS = 1E-9;
+	
+	int candidates;
+	long timeLimit; // ms, 0 for no limit
+	
+	public ChainSequencer() {
+		this(16, 0);
+	}
+	
+	/**
+	 * @param candidates the length of the candidate lists.
+	 * @param timeLimit the maximum time (milliseconds), 0 for no limit.
+	 */
+	
+	public ChainSequencer(int candidates, long timeLimit) {
+		this.candidates = candidates;
+		this.timeLimit = timeLimit;
+	}
+	
+	/**
+	 * Reorders chains (in place).
+	 * 
+	 * @param chains alternating chains of peaks and holes.
+	 * @param startX the position of the truck.
+	 * @param startY
+	 */
+	
+	public void improve(ArrayList <Truck> chains, double startX, double startY) {
+		if(chains.size() < 3)
+			return;
+		Search search = new Search(new ChainEndpoints(chains), startX, startY);
+		search.run(timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000L : Long.MAX_VALUE);
+		ArrayList <Truck> sequence = new ArrayList <> (chains);
+		for(int p = 0; p < chains.size(); p ++)
+			chains.set(p, sequence.get(search.sequence[p]));
+	}
+	
+	/**
+	 * The state of a search: sequence[p] is the chain at position p and position[c] the
+	 * position of the chain c.
+	 */
+	
+	private class Search {
+		final ChainEndpoints e;
+		final double startX, startY;
+		final int n;
+		final int[] sequence, position;
+		final int[][] out, in;
+		
+		/*
+		 * forward[p] is the cost of the links between the positions 0..p, backward[p] the cost
+		 * of the same links reversed. They are valid up to dirty - 1.
+		 */
+		
+		final double[] forward, backward;
+		int dirty;
+		
+		final int[] queue;
+		final boolean[] queued;
+		int head, tail, queueSize;
+		
+		Search(ChainEndpoints e, double startX, double startY) {
+			this.e = e;
+			this.startX = startX;
+			this.startY = startY;
+			n = e.size();
+			sequence = new int[n];
+			position = new int[n];
+			for(int p = 0; p < n; p ++) {
+				sequence[p] = p;
+				position[p] = p;
+			}
+			forward = new double[n];
+			backward = new double[n];
+			queue = new int[n];
+			queued = new boolean[n];
+			
+			/*
+			 * The candidate lists: the chains of the other type (the other parity) whose
+			 * beginning is the nearest to the end of c (out) and whose end is the nearest to
+			 * the beginning of c (in).
+			 */
+			
+			SpatialIndex[] firsts = {new SpatialIndex(e.firstX, e.firstY), new SpatialIndex(e.firstX, e.firstY)};
+			SpatialIndex[] lasts = {new SpatialIndex(e.lastX, e.lastY), new SpatialIndex(e.lastX, e.lastY)};
+			for(int c = 0; c < n; c ++) {
+				firsts[c % 2].add(c);
+				lasts[c % 2].add(c);
+			}
+			int k = Math.max(1, candidates);
+			out = new int[n][];
+			in = new int[n][];
+			for(int c = 0; c < n; c ++) {
+				out[c] = trim(firsts[1 - c % 2].nearest(e.lastX[c], e.lastY[c], k));
+				in[c] = trim(lasts[1 - c % 2].nearest(e.firstX[c], e.firstY[c], k));
+			}
+		}
+		
+		private int[] trim(int[] nearest) {
+			int size = 0;
+			while(size < nearest.length && nearest[size] != -1)
+				size ++;
+			return size == nearest.length ? nearest : Arrays.copyOf(nearest, size);
+		}
+		
+		/**
+		 * The cost of the link to the chain at position p (from the start if p == 0).
+		 */
+		
+		private double in(int p) {
+			return p == 0 ? e.distance(startX, startY, sequence[0]) : e.distance(sequence[p - 1], sequence[p]);
+		}
+		
+		/**
+		 * The cost of the link from the chain at position p (0 for the last one).
+		 */
+		
+		private double out(int p) {
+			return p == n - 1 ? 0.0 : e.distance(sequence[p], sequence[p + 1]);
+		}
+		
+		/**
+		 * The cost of the link from the chain at position p (-1 for the start) to the chain c.
+		 */
+		
+		private double link(int p, int c) {
+			return p < 0 ? e.distance(startX, startY, c) : e.distance(sequence[p], c);
+		}
+		
+		/**
+		 * The cost of the link from the chain c to the chain at position p (0 if p == n).
+		 */
+		
+		private double link(int c, int p, boolean unused) {
+			return p >= n ? 0.0 : e.distance(c, sequence[p]);
+		}
+		
+		private void push(int c) {
+			if(queued[c])
+				return;
+			queued[c] = true;
+			queue[tail] = c;
+			tail = (tail + 1) % n;
+			queueSize ++;
+		}
+		
+		private int pop() {
+			int c = queue[head];
+			head = (head + 1) % n;
+			queueSize --;
+			queued[c] = false;
+			return c;
+		}
+		
+		/**
+		 * Pushes the chains around the positions from..to (which have changed).
+		 */
+		
+		private void pushAround(int from, int to) {
+			for(int p = Math.max(0, from - 1); p <= Math.min(n - 1, to + 1); p ++)
+				push(sequence[p]);
+		}
+		
+		/**
+		 * The queue only holds the chains around the last moves, but a move can also change 
+		 * what is worth for a chain far from it (e.g. which chain is the last one), so when 
+		 * the queue is empty every chain is pushed again: it stops after a whole pass without 
+		 * moves, which is a local optimum.
+		 */
+		
+		void run(long deadline) {
+			long steps = 0;
+			boolean moved = true;
+			while(moved) {
+				moved = false;
+				for(int c = 0; c < n; c ++)
+					push(c);
+				while(queueSize > 0) {
+					if((steps ++ & 63) == 0 && System.nanoTime() > deadline)
+						return;
+					int c = pop();
+					if(orOpt(c) || twoOpt(c) || swap(c)) {
+						push(c);
+						moved = true;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Moves a segment which starts with c after a chain before c in its list, or a
+		 * segment which ends with c before a chain after c in its list.
+		 */
+		
+		private boolean orOpt(int c) {
+			int p = position[c];
+			for(int length = 2; length <= MAX_SEGMENT; length += 2) {
+				if(p + length - 1 < n) {
+					int i = p;
+					int j = p + length - 1;
+					for(int a : in[c])
+						if(tryOrOpt(i, j, position[a]))
+							return true;
+					if(i % 2 == 0 && tryOrOpt(i, j, -1))
+						return true;
+				}
+				if(p - length + 1 >= 0) {
+					int i = p - length + 1;
+					int j = p;
+					for(int b : out[c])
+						if(tryOrOpt(i, j, position[b] - 1))
+							return true;
+				}
+			}
+			return false;
+		}
+		
+		/**
+		 * Moves the segment i..j between the positions q and q + 1 (q = -1 for the front) if
+		 * it improves the sequence.
+		 */
+		
+		private boolean tryOrOpt(int i, int j, int q) {
+			if(q >= i - 1 && q <= j)
+				return false;
+			if((q - i) % 2 == 0)
+				return false; // the alternation would break
+			int first = sequence[i];
+			int last = sequence[j];
+			double removed = in(i) + out(j) - (j == n - 1 ? 0.0 : link(i - 1, sequence[j + 1]));
+			double added = link(q, first) + link(last, q + 1, true) - (q + 1 >= n ? 0.0 : link(q, sequence[q + 1]));
+			if(added - removed > -EPS)
+				return false;
+			
+			int length = j - i + 1;
+			if(q > j) {
+				rotate(i, q, length); // i..q: the segment goes to the end
+				markDirty(i);
+				pushAround(i, i);
+				pushAround(q - length + 1, q);
+			} else {
+				rotate(q + 1, j, j - q - length); // q + 1..j: the segment goes to the front
+				markDirty(q + 1);
+				pushAround(q + 1, q + length);
+				pushAround(j, j);
+			}
+			return true;
+		}
+		
+		/**
+		 * Rotates sequence[from..to] to the left by shift positions.
+		 */
+		
+		private void rotate(int from, int to, int shift) {
+			reverse(from, from + shift - 1);
+			reverse(from + shift, to);
+			reverse(from, to);
+		}
+		
+		private void reverse(int from, int to) {
+			for(; from < to; from ++, to --) {
+				int c = sequence[from];
+				sequence[from] = sequence[to];
+				sequence[to] = c;
+				position[sequence[from]] = from;
+				position[sequence[to]] = to;
+			}
+		}
+		
+		private void markDirty(int p) {
+			dirty = Math.min(dirty, p);
+		}
+		
+		/**
+		 * Makes forward and backward valid up to p.
+		 */
+		
+		private void prefixSums(int p) {
+			if(dirty == 0) {
+				forward[0] = 0.0;
+				backward[0] = 0.0;
+				dirty = 1;
+			}
+			for(; dirty <= p; dirty ++) {
+				forward[dirty] = forward[dirty - 1] + e.distance(sequence[dirty - 1], sequence[dirty]);
+				backward[dirty] = backward[dirty - 1] + e.distance(sequence[dirty], sequence[dirty - 1]);
+			}
+		}
+		
+		/**
+		 * Reverses a segment so that c gets linked to a chain of its lists: c -> b (c before
+		 * the segment, or c the first of the segment and b after it) or a -> c.
+		 */
+		
+		private boolean twoOpt(int c) {
+			int p = position[c];
+			for(int b : out[c]) {
+				int q = position[b];
+				if(q > p && (tryTwoOpt(p + 1, q) || tryTwoOpt(p, q - 1)))
+					return true;
+			}
+			for(int a : in[c]) {
+				int q = position[a];
+				if(q < p && (tryTwoOpt(q + 1, p) || tryTwoOpt(q, p - 1)))
+					return true;
+			}
+			return false;
+		}
+		
+		/**
+		 * Reverses sequence[i..j] if it improves the sequence.
+		 */
+		
+		private boolean tryTwoOpt(int i, int j) {
+			if(j - i < 2 || (j - i) % 2 != 0)
+				return false;
+			prefixSums(j);
+			double before = in(i) + (forward[j] - forward[i]) + out(j);
+			double after = link(i - 1, sequence[j]) + (backward[j] - backward[i]) + link(sequence[i], j + 1, true);
+			if(after - before > -EPS)
+				return false;
+			reverse(i, j);
+			markDirty(i);
+			pushAround(i, i);
+			pushAround(j, j);
+			return true;
+		}
+		
+		/**
+		 * Swaps the chain after c with a chain of its out list, or the chain before c with a
+		 * chain of its in list.
+		 */
+		
+		private boolean swap(int c) {
+			int p = position[c];
+			if(p + 1 < n)
+				for(int b : out[c])
+					if(trySwap(p + 1, position[b]))
+						return true;
+			if(p > 0)
+				for(int a : in[c])
+					if(trySwap(p - 1, position[a]))
+						return true;
+			return false;
+		}
+		
+		private boolean trySwap(int p, int q) {
+			if(p == q)
+				return false;
+			if(p > q) {
+				int t = p;
+				p = q;
+				q = t;
+			}
+			int cp = sequence[p];
+			int cq = sequence[q];
+			double before = in(p) + out(p) + in(q) + out(q);
+			double after = link(p - 1, cq) + e.distance(cq, sequence[p + 1]) + e.distance(sequence[q - 1], cp) + link(cp, q + 1, true);
+			if(after - before > -EPS)
+				return false;
+			sequence[p] = cq;
+			sequence[q] = cp;
+			position[cq] = p;
+			position[cp] = q;
+			markDirty(p);
+			pushAround(p, p);
+			pushAround(q, q);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+/**
+ * Checks ChainSequencer on random sequences of chains (random first and last coordinates):
+ * - the result must be a permutation of the chains which still alternates peaks and holes;
+ * - its cost must not be greater than the cost of the sequence given;
+ * - with full candidate lists and no time limit it must be a local optimum: no Or-opt,
+ * 2-opt or swap move (the moves of ChainSequencer, all of them tried by brute force)
+ * improves it.
+ * 
+ * Arguments (all optional): instances (200), seed (1).
+ * Exits with 1 if a check fails.
+ */
+
+public class ChainSequencerChecker {
+	
+	static final double EPS = 1E-7;
+	
+	public static void main(String[] args) {
+		int instances = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		SplittableRandom random = new SplittableRandom(seed);
+		int invalid = 0;
+		int worse = 0;
+		int notLocalOptima = 0;
+		double gain = 0.0;
+		
+		for(int t = 0; t < instances; t ++) {
+			int n = 2 * (1 + random.nextInt(20));
+			ArrayList <Truck> chains = new ArrayList <> ();
+			for(int c = 0; c < n; c ++)
+				chains.add(randomChain(random));
+			double startX = random.nextDouble() * 100.0;
+			double startY = random.nextDouble() * 100.0;
+			
+			ArrayList <Truck> sequence = new ArrayList <> (chains);
+			new ChainSequencer(n, 0).improve(sequence, startX, startY);
+			
+			if(!isAlternatingPermutation(chains, sequence)) {
+				invalid ++;
+				continue;
+			}
+			double before = cost(chains, startX, startY);
+			double after = cost(sequence, startX, startY);
+			if(after > before + EPS)
+				worse ++;
+			gain += (before - after) / before;
+			if(hasImprovingMove(sequence, startX, startY))
+				notLocalOptima ++;
+		}
+		
+		System.out.printf("%d sequences: %d invalid, %d worse than the one given, %d not a local optimum (mean gain %.2f%%)%n", instances, invalid, worse, notLocalOptima, 100.0 * gain / instances);
+		boolean ok = invalid == 0 && worse == 0 && notLocalOptima == 0;
+		System.out.println(ok ? "OK" : "FAILED");
+		if(!ok)
+			System.exit(1);
+	}
+	
+	/**
+	 * A chain which starts and ends in random points (only its endpoints matter).
+	 */
+	
+	private static Truck randomChain(SplittableRandom random) {
+		Truck chain = new Truck(0, Math.PI, 1.0, new Coordinates(random.nextDouble() * 100.0, random.nextDouble() * 100.0), 0);
+		chain.move(new Coordinates(random.nextDouble() * 100.0, random.nextDouble() * 100.0));
+		return chain;
+	}
+	
+	/**
+	 * The chains of given alternate (peak, hole, ...): the chain at each position of sequence
+	 * must be at a position of the same parity in given, and every chain must be there once.
+	 */
+	
+	private static boolean isAlternatingPermutation(ArrayList <Truck> given, ArrayList <Truck> sequence) {
+		if(sequence.size() != given.size())
+			return false;
+		boolean[] seen = new boolean[given.size()];
+		for(int p = 0; p < sequence.size(); p ++) {
+			int c = given.indexOf(sequence.get(p));
+			if(c == -1 || seen[c] || c % 2 != p % 2)
+				return false;
+			seen[c] = true;
+		}
+		return true;
+	}
+	
+	private static double cost(ArrayList <Truck> sequence, double startX, double startY) {
+		ChainEndpoints e = new ChainEndpoints(sequence);
+		double cost = e.distance(startX, startY, 0);
+		for(int p = 0; p + 1 < e.size(); p ++)
+			cost += e.distance(p, p + 1);
+		return cost;
+	}
+	
+	private static boolean hasImprovingMove(ArrayList <Truck> sequence, double startX, double startY) {
+		int n = sequence.size();
+		double cost = cost(sequence, startX, startY);
+		
+		/*
+		 * Or-opt: the segment i..j (even length) between the positions q and q + 1.
+		 */
+		
+		for(int length = 2; length <= ChainSequencer.MAX_SEGMENT; length += 2)
+			for(int i = 0; i + length <= n; i ++)
+				for(int q = -1; q < n; q ++) {
+					int j = i + length - 1;
+					if((q >= i - 1 && q <= j) || (q - i) % 2 == 0)
+						continue;
+					ArrayList <Truck> moved = new ArrayList <> (sequence);
+					ArrayList <Truck> segment = new ArrayList <> (moved.subList(i, j + 1));
+					moved.subList(i, j + 1).clear();
+					moved.addAll(q > j ? q - length + 1 : q + 1, segment);
+					if(cost(moved, startX, startY) < cost - EPS)
+						return true;
+				}
+		
+		/*
+		 * 2-opt: the segment i..j (odd length) reversed.
+		 */
+		
+		for(int i = 0; i < n; i ++)
+			for(int j = i + 2; j < n; j += 2) {
+				ArrayList <Truck> reversed = new ArrayList <> (sequence);
+				Collections.reverse(reversed.subList(i, j + 1));
+				if(cost(reversed, startX, startY) < cost - EPS)
+					return true;
+			}
+		
+		/*
+		 * Swap of two chains of the same type.
+		 */
+		
+		for(int p = 0; p < n; p ++)
+			for(int q = p + 2; q < n; q += 2) {
+				ArrayList <Truck> swapped = new ArrayList <> (sequence);
+				Collections.swap(swapped, p, q);
+				if(cost(swapped, startX, startY) < cost - EPS)
+					return true;
+			}
+		return false;
+	}
+}
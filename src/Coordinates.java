@@ -28,6 +28,6 @@ public class Coordinates extends Vector2D {
 	}
 
 	public double distance(Coordinates c) {
-		return subtract(c).euclideanNorm();
+		return Geometry.distance(x, y, c.x, c.y);
 	}
 }
@@ -0,0 +1,60 @@
+/**
+ * A DistanceMatrix in a double[][]: the rows are read without copying.
+ */
+
+public class DenseDistanceMatrix implements DistanceMatrix {
+	
+	final double[][] matrix;
+	final int columns;
+	
+	/**
+	 * Wraps array (not copied).
+	 */
+	
+	public DenseDistanceMatrix(double[][] array) {
+		matrix = array;
+		columns = array.length == 0 ? 0 : array[0].length;
+		for(double[] row : array)
+			if(row.length != columns)
+				throw new IllegalArgumentException("Irregular matrix");
+	}
+	
+	/**
+	 * Fills the matrix in parallel (by blocks of rows).
+	 */
+	
+	public DenseDistanceMatrix(int rows, int columns, Entries entries) {
+		matrix = new double[rows][columns];
+		this.columns = columns;
+		DistanceMatrix.fillByBlocks(rows, (int from, int to) -> {
+			for(int i = from; i < to; i ++) {
+				double[] row = matrix[i];
+				for(int j = 0; j < columns; j ++)
+					row[j] = entries.get(i, j);
+			}
+		});
+	}
+	
+	public int rows() {
+		return matrix.length;
+	}
+	
+	public int columns() {
+		return columns;
+	}
+	
+	public double get(int i, int j) {
+		return matrix[i][j];
+	}
+	
+	public double[] row(int i, double[] buffer) {
+		return matrix[i];
+	}
+	
+	public double[][] toArray() {
+		double[][] array = new double[matrix.length][];
+		for(int i = 0; i < matrix.length; i ++)
+			array[i] = matrix[i].clone();
+		return array;
+	}
+}
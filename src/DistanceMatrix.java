@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A matrix of distances (or costs) as the engines read it, whatever the storage is: the
+ * assignment and the ATSP engines take it as it is, without copying it into a double[][].
+ * 
+ * The engines scan the matrix by rows: row(i, buffer) gives the array of the row itself when
+ * the storage has one (no copy) and fills buffer otherwise.
+ * 
+ * The storages (see Storage) are filled in parallel by blocks of rows, except the lazy one.
+ */
+
+public interface DistanceMatrix {
+	
+	/*
+	 * The number of entries above which AUTO stores the matrix off heap.
+	 */
+	
+	public static final long OFF_HEAP_THRESHOLD = 1L << 26;
+	public static final int BLOCK = 64; // rows filled by every task
+	
+	/**
+	 * How the entries are stored.
+	 */
+	
+	public enum Storage {
+		DOUBLE, // double[][] (on heap)
+		FLOAT, // float[][] (half the memory, about 7 significant digits)
+		LAZY, // a row is computed the first time it is read
+		OFF_HEAP, // direct buffers: the matrix is not in the heap
+		AUTO; // DOUBLE, or OFF_HEAP above OFF_HEAP_THRESHOLD entries (see forEngine)
+		
+		/**
+		 * The storage for an engine: off heap the matrix is only worth it if the engine reads 
+		 * it by rows, an engine which copies it into a double[][] would have it twice. So AUTO 
+		 * is DOUBLE for such engines.
+		 * 
+		 * @param readsRows if the engine reads the rows as they are (AssignmentEngine.readsRows).
+		 * @return the storage.
+		 */
+		
+		public Storage forEngine(boolean readsRows) {
+			return this == AUTO && !readsRows ? DOUBLE : this;
+		}
+	}
+	
+	/**
+	 * The entry (i, j) from the indexes: it must be thread safe.
+	 */
+	
+	public interface Entries {
+		public double get(int i, int j);
+	}
+	
+	public int rows();
+	
+	public int columns();
+	
+	public double get(int i, int j);
+	
+	/**
+	 * @param i
+	 * @param buffer an array of columns() doubles.
+	 * @return the row i (the array of the storage or buffer): it must not be modified.
+	 */
+	
+	public default double[] row(int i, double[] buffer) {
+		for(int j = 0; j < columns(); j ++)
+			buffer[j] = get(i, j);
+		return buffer;
+	}
+	
+	/**
+	 * A copy in a double[][] (for the engines which need it).
+	 */
+	
+	public default double[][] toArray() {
+		double[][] array = new double[rows()][];
+		for(int i = 0; i < rows(); i ++)
+			array[i] = row(i, new double[columns()]).clone();
+		return array;
+	}
+	
+	/**
+	 * The matrix of an array (not copied).
+	 */
+	
+	public static DistanceMatrix of(double[][] array) {
+		return new DenseDistanceMatrix(array);
+	}
+	
+	/**
+	 * @param rows
+	 * @param columns
+	 * @param entries
+	 * @param storage
+	 * @return the matrix.
+	 */
+	
+	public static DistanceMatrix create(int rows, int columns, Entries entries, Storage storage) {
+		switch(storage) {
+		case FLOAT:
+			return new FloatDistanceMatrix(rows, columns, entries);
+		case LAZY:
+			return new LazyDistanceMatrix(rows, columns, entries);
+		case OFF_HEAP:
+			return new OffHeapDistanceMatrix(rows, columns, entries);
+		case AUTO:
+			if((long) rows * columns > OFF_HEAP_THRESHOLD)
+				return new OffHeapDistanceMatrix(rows, columns, entries);
+			return new DenseDistanceMatrix(rows, columns, entries);
+		default:
+			return new DenseDistanceMatrix(rows, columns, entries);
+		}
+	}
+	
+	/**
+	 * The square matrix of the problem: the missing rows (or columns) cost 0. It is a view
+	 * of matrix (matrix itself if it is already square).
+	 */
+	
+	public static DistanceMatrix square(DistanceMatrix matrix) {
+		int rows = matrix.rows();
+		int columns = matrix.columns();
+		if(rows == columns)
+			return matrix;
+		int n = Math.max(rows, columns);
+		return new DistanceMatrix() {
+			public int rows() {
+				return n;
+			}
+			
+			public int columns() {
+				return n;
+			}
+			
+			public double get(int i, int j) {
+				return i < rows && j < columns ? matrix.get(i, j) : 0.0;
+			}
+			
+			public double[] row(int i, double[] buffer) {
+				if(i < rows) {
+					double[] row = matrix.row(i, buffer);
+					if(row != buffer)
+						System.arraycopy(row, 0, buffer, 0, columns);
+				} else
+					Arrays.fill(buffer, 0, columns, 0.0);
+				Arrays.fill(buffer, columns, n, 0.0);
+				return buffer;
+			}
+		};
+	}
+	
+	/**
+	 * Runs fill on every block of BLOCK rows, in parallel.
+	 */
+	
+	public static void fillByBlocks(int rows, BlockFiller fill) {
+		int blocks = (rows + BLOCK - 1) / BLOCK;
+		IntStream.range(0, blocks).parallel().forEach((int b) -> fill.accept(b * BLOCK, Math.min(rows, (b + 1) * BLOCK)));
+	}
+	
+	/**
+	 * Fills the rows from..to - 1.
+	 */
+	
+	public interface BlockFiller {
+		public void accept(int from, int to);
+	}
+}
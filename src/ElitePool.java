@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The best diverse solutions found by GRASP_Solver (at most capacity of them). A solution is 
+ * the truck after fixField and the chains in the order it follows them, so that it can be 
+ * relinked with another one (see PathRelinking) and turned into a path again.
+ * 
+ * Two solutions are compared by their links: the pairs (cell where a chain ends, cell where 
+ * the next one starts). A new solution whose links differ in less than MIN_DIFFERENCE of the 
+ * cases from the ones of a solution of the pool replaces it only if it is shorter; otherwise 
+ * it gets in if the pool is not full or if it is shorter than the longest one, which leaves.
+ * 
+ * The solutions are added by the iterations (also in parallel) but get into the pool only 
+ * with merge(), in the order of their ids: the pool does not depend on the scheduling.
+ */
+
+public class ElitePool {
+	
+	public static final double MIN_DIFFERENCE = 0.1;
+	
+	public static class Solution {
+		final Truck start;
+		final ArrayList <Truck> chains;
+		final double length;
+		final double alpha;
+		final int id;
+		final long[] links; // sorted
+		
+		Solution(Truck start, ArrayList <Truck> chains, double length, double alpha, int id, long[] links) {
+			this.start = start;
+			this.chains = chains;
+			this.length = length;
+			this.alpha = alpha;
+			this.id = id;
+			this.links = links;
+		}
+	}
+	
+	final int capacity;
+	final Field field;
+	final ArrayList <Solution> solutions = new ArrayList <> ();
+	final ArrayList <Solution> pending = new ArrayList <> ();
+	
+	/**
+	 * @param capacity
+	 * @param field the field of the solutions (only its cells are used).
+	 */
+	
+	public ElitePool(int capacity, Field field) {
+		this.capacity = capacity;
+		this.field = field;
+	}
+	
+	/**
+	 * Adds a solution, which gets into the pool (maybe) at the next merge(). It is discarded 
+	 * at once if the pool is full and it is not shorter than the longest solution.
+	 * 
+	 * @param start the truck after fixField.
+	 * @param chains the chains in their order.
+	 * @param length the length of the path.
+	 * @param alpha the alpha of the iteration.
+	 * @param id the id of the iteration (unique).
+	 */
+	
+	public void add(Truck start, ArrayList <Truck> chains, double length, double alpha, int id) {
+		if(solutions.size() == capacity && length >= longest().length)
+			return;
+		Solution s = new Solution(start, chains, length, alpha, id, links(chains));
+		synchronized(pending) {
+			pending.add(s);
+		}
+	}
+	
+	/**
+	 * Moves the solutions added into the pool (in the order of their ids). It must not run 
+	 * with add().
+	 */
+	
+	public void merge() {
+		pending.sort(Comparator.comparingInt((Solution s) -> s.id));
+		for(Solution s : pending)
+			offer(s);
+		pending.clear();
+	}
+	
+	private void offer(Solution s) {
+		Solution similar = null;
+		double min = MIN_DIFFERENCE;
+		for(Solution t : solutions) {
+			double d = difference(s.links, t.links);
+			if(d < min) {
+				min = d;
+				similar = t;
+			}
+		}
+		if(similar != null) {
+			if(s.length < similar.length)
+				solutions.set(solutions.indexOf(similar), s);
+			return;
+		}
+		if(solutions.size() < capacity)
+			solutions.add(s);
+		else if(s.length < longest().length)
+			solutions.set(solutions.indexOf(longest()), s);
+	}
+	
+	private Solution longest() {
+		Solution longest = null;
+		for(Solution s : solutions)
+			if(longest == null || s.length > longest.length)
+				longest = s;
+		return longest;
+	}
+	
+	/**
+	 * @return the solutions of the pool.
+	 */
+	
+	public ArrayList <Solution> solutions() {
+		return new ArrayList <> (solutions);
+	}
+	
+	public int size() {
+		return solutions.size();
+	}
+	
+	private long[] links(ArrayList <Truck> chains) {
+		long[] links = new long[Math.max(0, chains.size() - 1)];
+		for(int p = 1; p < chains.size(); p ++) {
+			Path from = chains.get(p - 1).path;
+			Path to = chains.get(p).path;
+			links[p - 1] = (long) field.indexOf(from.getLastX(), from.getLastY()) * field.size() + field.indexOf(to.getFirstX(), to.getFirstY());
+		}
+		Arrays.sort(links);
+		return links;
+	}
+	
+	/**
+	 * The fraction of the links of a which are not links of b (both sorted).
+	 */
+	
+	static double difference(long[] a, long[] b) {
+		if(a.length == 0)
+			return b.length == 0 ? 0.0 : 1.0;
+		int common = 0;
+		for(int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if(a[i] == b[j]) {
+				common ++;
+				i ++;
+				j ++;
+			} else if(a[i] < b[j])
+				i ++;
+			else
+				j ++;
+		}
+		return 1.0 - (double) common / Math.max(a.length, b.length);
+	}
+}
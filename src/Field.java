@@ -1,81 +1,339 @@
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Scanner;
 
 public class Field {
 	
-	public HashMap <Coordinates, Long> cells;
+	/*
+	 * Every cell is identified by an int index (the order of the input).
+	 * Coordinates and quantities are stored in primitive arrays, so the hot paths
+	 * of the solvers (which work on the indexes) never box or hash anything.
+	 */
+	
+	double[] x, y;
+	long[] quantities;
 	public double deltaX, deltaY;
 	public static final long PRECISION = (int)1E4;
 	
+	/*
+	 * If the cells lie on a regular lattice (this is the usual case) any coordinates
+	 * can be mapped to its index with some arithmetic: grid[row * columns + column].
+	 * Otherwise indexByCoordinates is used.
+	 */
+	
+	Lattice lattice;
+	int[] grid;
+	HashMap <Coordinates, Integer> indexByCoordinates;
+	
+	/*
+	 * The cells which are currently peaks (holes) and the total quantity of terrain over 
+	 * the peaks (under the holes). They are kept up to date by increment.
+	 */
+	
+	SpatialIndex peaks, holes;
+	long terrainOverPeaks, terrainUnderHoles;
+	
+	/*
+	 * The undo log (see checkpoint): the cells changed since the checkpoint and their 
+	 * quantities at the checkpoint (only the first change of each cell is logged). logged is 
+	 * null if there is no checkpoint.
+	 */
+	
+	boolean[] logged;
+	int[] changed;
+	long[] original;
+	int numberOfChanged;
+	
 	public Field(Scanner scanner) {
-		cells = new HashMap <> ();
-		long sum = 0;
 		int numberOfCells = Integer.parseInt(scanner.next());
+		x = new double[numberOfCells];
+		y = new double[numberOfCells];
+		quantities = new long[numberOfCells];
+		long sum = 0;
 		for(int i = 0; i < numberOfCells; i ++) {
-			double x = Double.parseDouble(scanner.next());
-			double y = Double.parseDouble(scanner.next()); 
-			long q = (long)(Double.parseDouble(scanner.next()) * PRECISION);
-			
-			cells.put(new Coordinates(x, y), q);
+			x[i] = Double.parseDouble(scanner.next());
+			y[i] = Double.parseDouble(scanner.next());
+			quantities[i] = (long)(Double.parseDouble(scanner.next()) * PRECISION);
 			
-			sum += q;
+			sum += quantities[i];
 		}
 		
+		normalize(quantities, sum);
+		buildIndex(Lattice.detect(x, y));
+		buildSpatialIndexes();
+	}
+	
+	/**
+	 * Builds a field whose quantities are already normalized (their sum is 0) and whose 
+	 * lattice is already known. The arrays are not copied.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param quantities
+	 * @param lattice
+	 */
+	
+	Field(double[] x, double[] y, long[] quantities, Lattice lattice) {
+		this.x = x;
+		this.y = y;
+		this.quantities = quantities;
+		buildIndex(lattice);
+		buildSpatialIndexes();
+	}
+	
+	/**
+	 * Subtracts the mean from every quantity, so that the sum over the field is 0.
+	 * 
+	 * @param quantities
+	 * @param sum the sum of the quantities.
+	 */
+	
+	static void normalize(long[] quantities, long sum) {
+		int numberOfCells = quantities.length;
 		long mean = sum / numberOfCells;
-		for(Coordinates c : cells.keySet())
-			cells.put(c, cells.get(c) - mean);
+		for(int i = 0; i < numberOfCells; i ++)
+			quantities[i] -= mean;
 		
 		/*
 		 * FIX
 		 * 
-		 * The error is not relevant so just increment / decrement by one some "random" cells 
+		 * The error is not relevant so just increment / decrement by one some "random" cells
 		 * until we have a sum = 0 over the field.
 		 */
 		
 		long remainder = sum % numberOfCells;
 		long inc = Long.signum(remainder);
-		for(Coordinates c : cells.keySet()) {
+		for(int i = 0; i < numberOfCells; i ++) {
 			if(remainder == 0)
 				break;
-			cells.put(c, cells.get(c) - inc);
+			quantities[i] -= inc;
 			remainder -= inc;
 		}
+	}
+	
+	private Field(Field f) {
+		x = f.x; // never modified
+		y = f.y; // never modified
+		quantities = f.quantities.clone();
+		deltaX = f.deltaX;
+		deltaY = f.deltaY;
+		lattice = f.lattice; // never modified
+		grid = f.grid; // never modified
+		indexByCoordinates = f.indexByCoordinates; // never modified
+		peaks = f.peaks.clone();
+		holes = f.holes.clone();
+		terrainOverPeaks = f.terrainOverPeaks;
+		terrainUnderHoles = f.terrainUnderHoles;
+	}
+	
+	public Field clone() {
+		return new Field(this);
+	}
+	
+	/**
+	 * If the lattice is regular the cells are mapped on a dense grid, otherwise we fall 
+	 * back to an HashMap.
+	 */
+	
+	private void buildIndex(Lattice lattice) {
+		this.lattice = lattice;
+		deltaX = lattice.deltaX;
+		deltaY = lattice.deltaY;
 		
-		deltaX = Double.MAX_VALUE;
-		deltaY = Double.MAX_VALUE;
-		for(Coordinates c1 : cells.keySet()) {
-			for(Coordinates c2 : cells.keySet()) {
-				if(!c1.equals(c2) && c1.sameY(c2))
-					deltaX = Math.min(deltaX, c1.distance(c2));
-				if(!c1.equals(c2) && c1.sameX(c2))
-					deltaY = Math.min(deltaY, c1.distance(c2));
-			}
+		if(lattice.regular) {
+			grid = new int[lattice.rows * lattice.columns];
+			Arrays.fill(grid, -1);
+			for(int i = 0; i < size(); i ++)
+				grid[lattice.row(y[i]) * lattice.columns + lattice.column(x[i])] = i;
+			return;
+		}
+		
+		indexByCoordinates = new HashMap <> ();
+		for(int i = 0; i < size(); i ++)
+			indexByCoordinates.put(getCoordinates(i), i);
+	}
+	
+	private void buildSpatialIndexes() {
+		peaks = new SpatialIndex(x, y);
+		holes = new SpatialIndex(x, y);
+		terrainOverPeaks = 0;
+		terrainUnderHoles = 0;
+		for(int i = 0; i < size(); i ++) {
+			if(isAPeak(i))
+				peaks.add(i);
+			if(isAnHole(i))
+				holes.add(i);
+			terrainOverPeaks += Math.max(quantities[i], 0);
+			terrainUnderHoles += Math.max(-quantities[i], 0);
 		}
 	}
 	
-	private Field(HashMap <Coordinates, Long> cells, double deltaX, double deltaY) {
-		this.cells = (HashMap<Coordinates, Long>) cells.clone();
-		this.deltaX = deltaX;
-		this.deltaY = deltaY;
+	public int size() {
+		return quantities.length;
 	}
 	
-	public Field clone() {
-		return new Field(cells, deltaX, deltaY);
+	public boolean isRegular() {
+		return grid != null;
+	}
+	
+	/**
+	 * Returns the index of the cell with the given coordinates.
+	 * 
+	 * @param cx
+	 * @param cy
+	 * @return the index or -1 if there is not such a cell.
+	 */
+	
+	public int indexOf(double cx, double cy) {
+		if(grid == null) {
+			Integer i = indexByCoordinates.get(new Coordinates(cx, cy));
+			return i == null ? -1 : i;
+		}
+		int column = lattice.column(cx);
+		int row = lattice.row(cy);
+		if(!lattice.contains(row, column))
+			return -1;
+		int i = grid[row * lattice.columns + column];
+		if(i == -1)
+			return -1;
+		if(Math.abs(x[i] - cx) < Vector2D.MAX_ERROR_COOR && Math.abs(y[i] - cy) < Vector2D.MAX_ERROR_COOR)
+			return i;
+		return -1;
+	}
+	
+	public int indexOf(Coordinates c) {
+		return indexOf(c.x, c.y);
+	}
+	
+	public double getX(int i) {
+		return x[i];
+	}
+	
+	public double getY(int i) {
+		return y[i];
+	}
+	
+	public Coordinates getCoordinates(int i) {
+		return new Coordinates(x[i], y[i]);
+	}
+	
+	public ArrayList <Coordinates> getAllCoordinates() {
+		ArrayList <Coordinates> coordinates = new ArrayList <> (size());
+		for(int i = 0; i < size(); i ++)
+			coordinates.add(getCoordinates(i));
+		return coordinates;
+	}
+	
+	public long getQuantity(int i) {
+		return quantities[i];
 	}
 	
 	public long getQuantity(Coordinates c) {
-		return cells.get(c);
+		return quantities[indexOf(c)];
+	}
+	
+	public void increment(int i, long q) {
+		if(logged != null && !logged[i]) {
+			if(numberOfChanged == changed.length) {
+				changed = Arrays.copyOf(changed, 2 * changed.length);
+				original = Arrays.copyOf(original, 2 * original.length);
+			}
+			logged[i] = true;
+			changed[numberOfChanged] = i;
+			original[numberOfChanged ++] = quantities[i];
+		}
+		apply(i, q);
+	}
+	
+	private void apply(int i, long q) {
+		boolean wasAPeak = isAPeak(i);
+		boolean wasAnHole = isAnHole(i);
+		terrainOverPeaks -= Math.max(quantities[i], 0);
+		terrainUnderHoles -= Math.max(-quantities[i], 0);
+		quantities[i] += q;
+		terrainOverPeaks += Math.max(quantities[i], 0);
+		terrainUnderHoles += Math.max(-quantities[i], 0);
+		if(wasAPeak != isAPeak(i)) {
+			if(wasAPeak)
+				peaks.remove(i);
+			else
+				peaks.add(i);
+		}
+		if(wasAnHole != isAnHole(i)) {
+			if(wasAnHole)
+				holes.remove(i);
+			else
+				holes.add(i);
+		}
+	}
+	
+	/**
+	 * Starts to log the changes, so that rollback can bring the field back to this state in 
+	 * a time proportional to the cells changed (instead of cloning the field for every 
+	 * attempt). A new checkpoint forgets the previous one.
+	 */
+	
+	public void checkpoint() {
+		if(logged == null) {
+			logged = new boolean[size()];
+			changed = new int[16];
+			original = new long[16];
+		}
+		for(int k = 0; k < numberOfChanged; k ++)
+			logged[changed[k]] = false;
+		numberOfChanged = 0;
+	}
+	
+	/**
+	 * Brings the field back to the state of the last checkpoint (which stays). Peaks, holes
+	 * and the totals are restored as well.
+	 * 
+	 * @throws IllegalStateException if there is no checkpoint.
+	 */
+	
+	public void rollback() {
+		if(logged == null)
+			throw new IllegalStateException("no checkpoint");
+		for(int k = numberOfChanged - 1; k >= 0; k --) {
+			int i = changed[k];
+			if(quantities[i] != original[k])
+				apply(i, original[k] - quantities[i]);
+			logged[i] = false;
+		}
+		numberOfChanged = 0;
+	}
+	
+	/**
+	 * Keeps the changes and stops logging them.
+	 */
+	
+	public void commit() {
+		logged = null;
+		changed = null;
+		original = null;
+		numberOfChanged = 0;
 	}
 	
 	public void increment(Coordinates c, long q) {
-		if(cells.containsKey(c))
-			cells.put(c, cells.get(c) + q);
+		int i = indexOf(c);
+		if(i != -1)
+			increment(i, q);
+	}
+	
+	public void decrement(int i, long q) {
+		increment(i, -q);
 	}
 	
 	public void decrement(Coordinates c, long q) {
 		increment(c, -q);
 	}
 	
+	public void update(int from, int to, long q) {
+		decrement(from, q);
+		increment(to, q);
+	}
+	
 	public void update(Coordinates from, Coordinates to, long q) {
 		decrement(from, q);
 		increment(to, q);
@@ -86,25 +344,81 @@ public class Field {
 	}
 	
 	public boolean isSmooth() {
-		for(Coordinates c : cells.keySet())
-			if(getQuantity(c) != 0)
-				return false;
-		return true;
+		return peaks.isEmpty() && holes.isEmpty();
+	}
+	
+	public int numberOfPeaks() {
+		return peaks.size();
+	}
+	
+	public int numberOfHoles() {
+		return holes.size();
+	}
+	
+	public boolean isAnHole(int i) {
+		return quantities[i] < 0;
 	}
 	
 	public boolean isAnHole(Coordinates c) {
 		return getQuantity(c) < 0;
 	}
 	
+	public boolean isAPeak(int i) {
+		return quantities[i] > 0;
+	}
+	
 	public boolean isAPeak(Coordinates c) {
 		return getQuantity(c) > 0;
 	}
 	
+	/**
+	 * Returns the nearest peak to (qx, qy).
+	 * 
+	 * @param qx
+	 * @param qy
+	 * @return the index of the peak or -1 if there are not peaks.
+	 */
+	
+	public int getTheNearestPeak(double qx, double qy) {
+		return peaks.nearest(qx, qy);
+	}
+	
+	public int getTheNearestHole(double qx, double qy) {
+		return holes.nearest(qx, qy);
+	}
+	
+	/**
+	 * Returns the k nearest peaks to (qx, qy) ignoring the given cells. It does not 
+	 * modify the field.
+	 * 
+	 * @param qx
+	 * @param qy
+	 * @param k
+	 * @param exclude
+	 * @return the indexes sorted by distance (-1 if there are less than k peaks).
+	 */
+	
+	public int[] getTheNearestPeaks(double qx, double qy, int k, int...exclude) {
+		return peaks.nearest(qx, qy, k, exclude);
+	}
+	
+	public int[] getTheNearestHoles(double qx, double qy, int k, int...exclude) {
+		return holes.nearest(qx, qy, k, exclude);
+	}
+	
+	public int getTheMostDistantPeak(double qx, double qy) {
+		return peaks.mostDistant(qx, qy);
+	}
+	
+	public int getTheMostDistantHole(double qx, double qy) {
+		return holes.mostDistant(qx, qy);
+	}
+	
 	public long terrainToMove() {
-		long sum = 0;
-		for(Coordinates c : cells.keySet())
-			if(isAPeak(c))
-				sum += getQuantity(c);
-		return sum;
+		return terrainOverPeaks;
+	}
+	
+	public long terrainToFill() {
+		return terrainUnderHoles;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Scanner;
+
+/**
+ * A compact binary format for the fields, so that big inputs can be loaded without parsing.
+ * 
+ * HEADER (little endian):
+ * - MAGIC (int), VERSION (int)
+ * - number of cells (int), regular (int: 0 or 1)
+ * - deltaX, deltaY, minX, minY (double)
+ * - rows, columns (int)
+ * 
+ * Then the packed arrays: x[n] (double), y[n] (double), quantities[n] (long).
+ * The quantities are stored already normalized (as the Field constructor leaves them), so the
+ * field read is exactly the one built from the text file.
+ */
+
+public class FieldFile {
+	
+	public static final int MAGIC = 0x464C4431; // "FLD1"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 4 * 4 + 4 * 8 + 2 * 4;
+	
+	/**
+	 * Converts a text field (the format read by new Field(Scanner)) to the binary format.
+	 * 
+	 * @param textFile
+	 * @param binaryFile
+	 * @throws IOException
+	 */
+	
+	public static void convert(String textFile, String binaryFile) throws IOException {
+		Scanner scanner = new Scanner(new FileReader(new File(textFile)));
+		Field field = new Field(scanner);
+		scanner.close();
+		write(field, binaryFile);
+	}
+	
+	public static void write(Field field, String binaryFile) throws IOException {
+		int n = field.size();
+		try(RandomAccessFile file = new RandomAccessFile(new File(binaryFile), "rw");
+				FileChannel channel = file.getChannel()) {
+			channel.truncate(0);
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(field.lattice.regular ? 1 : 0);
+			header.putDouble(field.lattice.deltaX).putDouble(field.lattice.deltaY);
+			header.putDouble(field.lattice.minX).putDouble(field.lattice.minY);
+			header.putInt(field.lattice.rows).putInt(field.lattice.columns);
+			header.flip();
+			while(header.hasRemaining())
+				channel.write(header);
+			
+			/*
+			 * Every array is mapped on its own (a mapping can not exceed 2GB).
+			 */
+			
+			long position = HEADER_SIZE;
+			map(channel, FileChannel.MapMode.READ_WRITE, position, n).asDoubleBuffer().put(field.x);
+			position += 8L * n;
+			map(channel, FileChannel.MapMode.READ_WRITE, position, n).asDoubleBuffer().put(field.y);
+			position += 8L * n;
+			map(channel, FileChannel.MapMode.READ_WRITE, position, n).asLongBuffer().put(field.quantities);
+		}
+	}
+	
+	/**
+	 * Reads a binary field by mapping the file in memory. The cells are copied with bulk
+	 * gets straight into the arrays of the field: nothing is allocated for each cell.
+	 * 
+	 * The lattice of the header is checked against the cells (see Lattice.fits), so that a 
+	 * corrupt header can not give a wrong grid.
+	 * 
+	 * @param binaryFile
+	 * @return the field.
+	 * @throws IOException if the file is not a binary field, or it is truncated or corrupt.
+	 */
+	
+	public static Field read(String binaryFile) throws IOException {
+		try(RandomAccessFile file = new RandomAccessFile(new File(binaryFile), "r");
+				FileChannel channel = file.getChannel()) {
+			if(channel.size() < HEADER_SIZE)
+				throw new IOException(binaryFile + " is not a binary field");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException(binaryFile + " is not a binary field");
+			int n = header.getInt();
+			int regular = header.getInt();
+			double deltaX = header.getDouble();
+			double deltaY = header.getDouble();
+			double minX = header.getDouble();
+			double minY = header.getDouble();
+			int rows = header.getInt();
+			int columns = header.getInt();
+			
+			if(n < 0 || channel.size() != HEADER_SIZE + 24L * n)
+				throw new IOException(binaryFile + " is truncated");
+			
+			double[] x = new double[n];
+			double[] y = new double[n];
+			long[] quantities = new long[n];
+			long position = HEADER_SIZE;
+			map(channel, FileChannel.MapMode.READ_ONLY, position, n).asDoubleBuffer().get(x);
+			position += 8L * n;
+			map(channel, FileChannel.MapMode.READ_ONLY, position, n).asDoubleBuffer().get(y);
+			position += 8L * n;
+			map(channel, FileChannel.MapMode.READ_ONLY, position, n).asLongBuffer().get(quantities);
+			
+			Lattice lattice = new Lattice(deltaX, deltaY, minX, minY, rows, columns, regular == 1);
+			if((regular != 0 && regular != 1) || !lattice.fits(x, y))
+				throw new IOException(binaryFile + " has a corrupt header");
+			return new Field(x, y, quantities, lattice);
+		}
+	}
+	
+	/**
+	 * Usage: FieldFile textFile binaryFile
+	 */
+	
+	public static void main(String[] args) throws IOException {
+		convert(args[0], args[1]);
+	}
+	
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, int n) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, 8L * n);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+}
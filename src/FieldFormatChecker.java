@@ -0,0 +1,190 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+/**
+ * Checks FieldParser and FieldFile against the Scanner-based reader (new Field(Scanner)):
+ * - every text field given (Input/cellplot1b.txt ... cellplot4b.txt by default) must be read
+ * by FieldParser, with one and more threads, and written and read back by FieldFile exactly
+ * as new Field(Scanner) reads it;
+ * - the same on a random field big enough to be split in several chunks, with mixed
+ * separators;
+ * - the same on fields followed by other tokens (they are ignored, as Scanner does), while a
+ * token which is not a number among the cells must be an IOException;
+ * - FieldParser.parseDouble must give the same double as Double.parseDouble on random tokens.
+ * 
+ * Arguments (all optional): the text fields.
+ * Exits with 1 if a check fails.
+ */
+
+public class FieldFormatChecker {
+	
+	static int failures;
+	
+	public static void main(String[] args) throws IOException {
+		String[] inputs = args.length > 0 ? args : new String[] {"Input/cellplot1b.txt", "Input/cellplot2b.txt", "Input/cellplot3b.txt", "Input/cellplot4b.txt"};
+		for(String input : inputs)
+			checkFile(input);
+		
+		File big = File.createTempFile("field", ".txt");
+		try {
+			writeRandomField(big, 300000, new SplittableRandom(1L));
+			checkFile(big.getPath());
+			append(big, "-- 2 more cells --\n1e400 0 0.5\n10 0 -0.5\n");
+			checkFile(big.getPath()); // the tokens after the cells are in the last chunks
+		} finally {
+			big.delete();
+		}
+		
+		File small = File.createTempFile("field", ".txt");
+		try {
+			writeRandomField(small, 1000, new SplittableRandom(3L));
+			append(small, "12.5 -- the end of the field, 3 more cells --\n");
+			checkFile(small.getPath());
+			
+			Files.write(small.toPath(), "3\n0 0 1.5\n10 0 x\n0 10 -1.5\n".getBytes(StandardCharsets.US_ASCII));
+			checkInvalid(small.getPath());
+		} finally {
+			small.delete();
+		}
+		
+		checkNumbers(new SplittableRandom(2L), 200000);
+		
+		System.out.println(failures == 0 ? "OK" : "FAILED");
+		if(failures > 0)
+			System.exit(1);
+	}
+	
+	private static void checkFile(String textFile) throws IOException {
+		Scanner scanner = new Scanner(new FileReader(new File(textFile)));
+		Field expected = new Field(scanner);
+		scanner.close();
+		
+		int before = failures;
+		compare(textFile + " FieldParser (1 thread)", expected, FieldParser.parse(textFile, 1));
+		compare(textFile + " FieldParser (4 threads)", expected, FieldParser.parse(textFile, 4));
+		
+		File binary = File.createTempFile("field", ".bin");
+		try {
+			FieldFile.write(expected, binary.getPath());
+			compare(textFile + " FieldFile", expected, FieldFile.read(binary.getPath()));
+		} finally {
+			binary.delete();
+		}
+		System.out.printf("%s (%d cells): %s%n", textFile, expected.size(), failures == before ? "same field" : "DIFFERENT");
+	}
+	
+	/**
+	 * FieldParser must refuse a field with a token which is not a number among the cells.
+	 */
+	
+	private static void checkInvalid(String textFile) {
+		for(int threads : new int[] {1, 4}) {
+			try {
+				FieldParser.parse(textFile, threads);
+				System.out.println(textFile + " FieldParser (" + threads + " threads): a token which is not a number has been accepted");
+				failures ++;
+			} catch(IOException e) {
+				System.out.println(textFile + " FieldParser (" + threads + " threads): " + e.getMessage());
+			}
+		}
+	}
+	
+	private static void compare(String name, Field expected, Field actual) {
+		boolean same = Arrays.equals(expected.x, actual.x) && Arrays.equals(expected.y, actual.y) && Arrays.equals(expected.quantities, actual.quantities);
+		same &= expected.deltaX == actual.deltaX && expected.deltaY == actual.deltaY;
+		Lattice a = expected.lattice;
+		Lattice b = actual.lattice;
+		same &= a.minX == b.minX && a.minY == b.minY && a.rows == b.rows && a.columns == b.columns && a.regular == b.regular;
+		for(int i = 0; same && i < expected.size(); i ++)
+			same = actual.indexOf(expected.x[i], expected.y[i]) == expected.indexOf(expected.x[i], expected.y[i]);
+		if(!same) {
+			System.out.println(name + ": the field is different");
+			failures ++;
+		}
+	}
+	
+	/**
+	 * A regular grid of n cells whose quantities sum to about 0, with spaces, tabs and CRLF
+	 * between the numbers and various syntaxes for them.
+	 */
+	
+	private static void writeRandomField(File file, int n, SplittableRandom random) throws IOException {
+		String[] separators = {" ", "\t", "  ", " \t "};
+		String[] newLines = {"\n", "\r\n", " \n"};
+		int columns = (int)Math.ceil(Math.sqrt(n));
+		BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		try {
+			out.write(n + "\n");
+			for(int i = 0; i < n; i ++) {
+				double q = (random.nextDouble() - 0.5) * 2.0;
+				out.write((10.0 * (i % columns)) + separators[random.nextInt(separators.length)]);
+				out.write((i / columns) * 10 + ".0" + separators[random.nextInt(separators.length)]);
+				out.write(randomSyntax(q, random) + newLines[random.nextInt(newLines.length)]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static void append(File file, String text) throws IOException {
+		Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+	}
+	
+	private static String randomSyntax(double q, SplittableRandom random) {
+		switch(random.nextInt(4)) {
+		case 0:
+			return Double.toString(q);
+		case 1:
+			return String.format(Locale.ROOT, "%.3f", q);
+		case 2:
+			return String.format(Locale.ROOT, "%.6e", q);
+		default:
+			return (q >= 0 ? "+" : "") + String.format(Locale.ROOT, "%.17f", q);
+		}
+	}
+	
+	private static void checkNumbers(SplittableRandom random, int count) {
+		int wrong = 0;
+		for(int t = 0; t < count; t ++) {
+			String token;
+			switch(t % 5) {
+			case 0:
+				token = Double.toString(Double.longBitsToDouble(random.nextLong()));
+				break;
+			case 1:
+				token = Long.toString(random.nextLong());
+				break;
+			case 2:
+				token = (random.nextBoolean() ? "-" : "") + random.nextInt(100000) + "." + random.nextInt(100000);
+				break;
+			case 3:
+				token = random.nextInt(1000) + "e" + (random.nextInt(700) - 350);
+				break;
+			default:
+				token = randomSyntax((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20), random);
+			}
+			if(token.equals("NaN") || token.contains("Infinity"))
+				continue;
+			byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+			double expected = Double.parseDouble(token);
+			double actual = FieldParser.parseDouble(bytes, 0, bytes.length);
+			if(Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual)) {
+				if(wrong ++ < 10)
+					System.out.println("parseDouble(\"" + token + "\") = " + actual + " instead of " + expected);
+			}
+		}
+		System.out.printf("parseDouble: %d / %d different from Double.parseDouble%n", wrong, count);
+		if(wrong > 0)
+			failures ++;
+	}
+}
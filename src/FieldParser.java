@@ -0,0 +1,292 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A fast reader for the text fields (the number of cells and then "x y q" for each cell).
+ * 
+ * The file is split in line-aligned chunks which are read (in big NIO buffers) and parsed in
+ * parallel, without Scanner and with a hand-written parser for the numbers. The field built
+ * is exactly the one built by new Field(new Scanner(...)): like Scanner it reads only the
+ * first 3 * numberOfCells numbers, whatever follows them is ignored.
+ */
+
+public class FieldParser {
+	
+	public static final int BUFFER_SIZE = 1 << 22;
+	public static final int MIN_CHUNK_SIZE = 1 << 20;
+	
+	/*
+	 * 10^i for the fast path of the parser. They are all exact doubles.
+	 */
+	
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for(int i = 1; i < POWERS_OF_TEN.length; i ++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+	}
+	
+	/**
+	 * A growable array of the numbers found in a chunk, up to the first token which is not a 
+	 * number (invalid).
+	 */
+	
+	private static class Numbers {
+		double[] values = new double[1024];
+		int size;
+		String invalid; // null if every token is a number
+		
+		void add(double v) {
+			if(size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size ++] = v;
+		}
+	}
+	
+	public static Field parse(String textFile) throws IOException {
+		return parse(textFile, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Reads a text field.
+	 * 
+	 * @param textFile
+	 * @param threads the number of threads which parse the chunks.
+	 * @return the field.
+	 * @throws IOException
+	 */
+	
+	public static Field parse(String textFile, int threads) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(new File(textFile), "r");
+		FileChannel channel = file.getChannel();
+		try {
+			long size = channel.size();
+			
+			/*
+			 * The first token is the number of cells.
+			 */
+			
+			long position = skipWhitespaces(channel, 0, size);
+			long end = position;
+			StringBuilder first = new StringBuilder();
+			ByteBuffer one = ByteBuffer.allocate(1);
+			while(end < size && !isWhitespace(readByte(channel, end, one)))
+				first.append((char)readByte(channel, end ++, one));
+			int numberOfCells = Integer.parseInt(first.toString());
+			
+			/*
+			 * Chunk boundaries: each one is moved after the next new line.
+			 */
+			
+			int chunks = (int)Math.max(1, Math.min(threads * 4L, (size - end) / MIN_CHUNK_SIZE));
+			long[] boundaries = new long[chunks + 1];
+			boundaries[0] = end;
+			boundaries[chunks] = size;
+			for(int i = 1; i < chunks; i ++) {
+				long b = Math.max(boundaries[i - 1], end + (size - end) * i / chunks);
+				while(b < size && readByte(channel, b, one) != '\n')
+					b ++;
+				boundaries[i] = Math.min(size, b + 1);
+			}
+			
+			Numbers[] numbers = new Numbers[chunks];
+			try {
+				IntStream.range(0, chunks).parallel().forEach((int i) -> {
+					try {
+						numbers[i] = parseChunk(channel, boundaries[i], boundaries[i + 1]);
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch(UncheckedIOException e) {
+				throw e.getCause();
+			}
+			
+			double[] x = new double[numberOfCells];
+			double[] y = new double[numberOfCells];
+			long[] quantities = new long[numberOfCells];
+			long sum = 0;
+			int k = 0; // the position in the sequence of the numbers
+			for(Numbers chunk : numbers) {
+				for(int j = 0; j < chunk.size && k < 3 * numberOfCells; j ++, k ++) {
+					int i = k / 3;
+					switch(k % 3) {
+					case 0:
+						x[i] = chunk.values[j];
+						break;
+					case 1:
+						y[i] = chunk.values[j];
+						break;
+					default:
+						quantities[i] = (long)(chunk.values[j] * Field.PRECISION);
+						sum += quantities[i];
+					}
+				}
+				if(chunk.invalid != null && k < 3 * numberOfCells)
+					throw new IOException(textFile + ": \"" + chunk.invalid + "\" is not a number (cell " + (k / 3 + 1) + ")");
+			}
+			if(k < 3 * numberOfCells)
+				throw new IOException(textFile + ": expected " + numberOfCells + " cells");
+			
+			Field.normalize(quantities, sum);
+			return new Field(x, y, quantities, Lattice.detect(x, y));
+		} finally {
+			channel.close();
+			file.close();
+		}
+	}
+	
+	private static byte readByte(FileChannel channel, long position, ByteBuffer one) throws IOException {
+		one.clear();
+		channel.read(one, position);
+		return one.get(0);
+	}
+	
+	private static long skipWhitespaces(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer one = ByteBuffer.allocate(1);
+		while(position < size && isWhitespace(readByte(channel, position, one)))
+			position ++;
+		return position;
+	}
+	
+	/**
+	 * The same separators of Scanner (Character.isWhitespace) for ASCII.
+	 */
+	
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= 9 && b <= 13) || (b >= 28 && b <= 31);
+	}
+	
+	/**
+	 * Parses the numbers in [from, to), up to the first token which is not a number: the 
+	 * chunk does not know if that token is still in the cells or after them. A number which crosses the end of the buffer is
+	 * moved to the beginning of the buffer before reading the next part.
+	 */
+	
+	private static Numbers parseChunk(FileChannel channel, long from, long to) throws IOException {
+		Numbers numbers = new Numbers();
+		byte[] bytes = new byte[BUFFER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int kept = 0; // bytes of an incomplete token at the beginning of the buffer
+		long position = from;
+		while(position < to || kept > 0) {
+			buffer.clear();
+			buffer.position(kept);
+			buffer.limit((int)Math.min(bytes.length, kept + (to - position)));
+			while(buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if(read < 0) {
+					position = to; // the file has been truncated
+					break;
+				}
+				position += read;
+			}
+			int length = buffer.position();
+			boolean last = position >= to;
+			int i = 0;
+			kept = 0;
+			while(i < length) {
+				while(i < length && isWhitespace(bytes[i]))
+					i ++;
+				int start = i;
+				while(i < length && !isWhitespace(bytes[i]))
+					i ++;
+				if(start == i)
+					break;
+				if(i == length && !last) {
+					if(start == 0)
+						throw new IOException("token longer than " + BUFFER_SIZE + " bytes");
+					kept = i - start;
+					System.arraycopy(bytes, start, bytes, 0, kept);
+					break;
+				}
+				try {
+					numbers.add(parseDouble(bytes, start, i));
+				} catch(NumberFormatException e) {
+					numbers.invalid = new String(bytes, start, i - start, StandardCharsets.ISO_8859_1);
+					return numbers;
+				}
+			}
+		}
+		return numbers;
+	}
+	
+	/**
+	 * Parses [+-]digits[.digits][(e|E)[+-]digits]. When the significant digits are at most 15
+	 * and the exponent at most 22 (in absolute value) the result is m * 10^e (or m / 10^-e):
+	 * both m and 10^e are exact doubles, so one operation is correctly rounded and we get
+	 * the same value of Double.parseDouble. Otherwise (and for any other syntax) we use
+	 * Double.parseDouble.
+	 * 
+	 * @param bytes
+	 * @param from
+	 * @param to
+	 * @return the number.
+	 */
+	
+	static double parseDouble(byte[] bytes, int from, int to) {
+		int i = from;
+		boolean negative = false;
+		if(i < to && (bytes[i] == '-' || bytes[i] == '+'))
+			negative = bytes[i ++] == '-';
+		long mantissa = 0;
+		int significantDigits = 0;
+		int digits = 0;
+		int exponent = 0;
+		for(; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i ++, digits ++) {
+			if(mantissa != 0 || bytes[i] != '0')
+				significantDigits ++;
+			if(significantDigits <= 18)
+				mantissa = 10 * mantissa + (bytes[i] - '0');
+			else
+				exponent ++;
+		}
+		if(i < to && bytes[i] == '.') {
+			for(i ++; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i ++, digits ++) {
+				if(mantissa != 0 || bytes[i] != '0')
+					significantDigits ++;
+				if(significantDigits <= 18) {
+					mantissa = 10 * mantissa + (bytes[i] - '0');
+					exponent --;
+				}
+			}
+		}
+		if(digits > 0 && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i ++;
+			boolean negativeExponent = false;
+			if(i < to && (bytes[i] == '-' || bytes[i] == '+'))
+				negativeExponent = bytes[i ++] == '-';
+			int e = 0;
+			int exponentDigits = 0;
+			for(; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i ++, exponentDigits ++)
+				e = Math.min(10 * e + (bytes[i] - '0'), 100000);
+			if(exponentDigits == 0)
+				return slowParse(bytes, from, to);
+			exponent += negativeExponent ? -e : e;
+		}
+		if(digits == 0 || i != to || significantDigits > 15)
+			return slowParse(bytes, from, to);
+		
+		double value;
+		if(mantissa == 0)
+			value = 0.0;
+		else if(exponent >= 0 && exponent < POWERS_OF_TEN.length)
+			value = mantissa * POWERS_OF_TEN[exponent];
+		else if(exponent < 0 && -exponent < POWERS_OF_TEN.length)
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		else
+			return slowParse(bytes, from, to);
+		return negative ? -value : value;
+	}
+	
+	private static double slowParse(byte[] bytes, int from, int to) {
+		return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+	}
+}
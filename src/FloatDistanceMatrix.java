@@ -0,0 +1,45 @@
+/**
+ * A DistanceMatrix in a float[][]: half the memory of the doubles, the entries keep about 7 
+ * significant digits (the rows are converted into the buffer when they are read).
+ */
+
+public class FloatDistanceMatrix implements DistanceMatrix {
+	
+	final float[][] matrix;
+	final int columns;
+	
+	/**
+	 * Fills the matrix in parallel (by blocks of rows).
+	 */
+	
+	public FloatDistanceMatrix(int rows, int columns, Entries entries) {
+		matrix = new float[rows][columns];
+		this.columns = columns;
+		DistanceMatrix.fillByBlocks(rows, (int from, int to) -> {
+			for(int i = from; i < to; i ++) {
+				float[] row = matrix[i];
+				for(int j = 0; j < columns; j ++)
+					row[j] = (float) entries.get(i, j);
+			}
+		});
+	}
+	
+	public int rows() {
+		return matrix.length;
+	}
+	
+	public int columns() {
+		return columns;
+	}
+	
+	public double get(int i, int j) {
+		return matrix[i][j];
+	}
+	
+	public double[] row(int i, double[] buffer) {
+		float[] row = matrix[i];
+		for(int j = 0; j < columns; j ++)
+			buffer[j] = row[j];
+		return buffer;
+	}
+}
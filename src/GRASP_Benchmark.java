@@ -0,0 +1,50 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the variants of GRASP_Solver for the same wall-clock time: the schedule of alpha 
+ * and reactive GRASP, without and with path relinking. All of them run solve(budget) on the 
+ * same inputs, with the same seeds.
+ * 
+ * Arguments (all optional): capacity (400), budget in milliseconds (10000), number of seeds 
+ * (3), threads (0 for sequential), then the inputs (Input/cellplot1b.txt ... cellplot3b.txt).
+ */
+
+public class GRASP_Benchmark {
+	
+	static final String[] VARIANTS = {"schedule", "reactive", "schedule+relinking", "reactive+relinking"};
+	
+	public static void main(String[] args) throws IOException {
+		long capacity = args.length > 0 ? Long.parseLong(args[0]) : 400;
+		long budget = args.length > 1 ? Long.parseLong(args[1]) : 10000;
+		int seeds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		String[] inputs = args.length > 4 ? Arrays.copyOfRange(args, 4, args.length) : new String[] {"Input/cellplot1b.txt", "Input/cellplot2b.txt", "Input/cellplot3b.txt"};
+		ExecutorService executor = threads > 0 ? new ForkJoinPool(threads) : null;
+		
+		System.out.println("capacity = " + capacity + ", budget = " + budget + "ms, threads = " + threads);
+		for(String input : inputs) {
+			double[] sum = new double[VARIANTS.length];
+			for(int seed = 1; seed <= seeds; seed ++) {
+				for(int v = 0; v < VARIANTS.length; v ++) {
+					Field field = new Field(new Scanner(new FileReader(new File(input))));
+					Truck truck = new Truck(capacity, Math.PI / 4.0, Math.min(field.deltaX, field.deltaY), new Coordinates(0.0, 0.0), 0);
+					Path path = new GRASP_Solver(field, truck, seed, executor).setReactive(v % 2 == 1).setRelinking(v >= 2).solve(budget);
+					sum[v] += path.length();
+					System.out.printf("%s seed %d %s: %.3f%n", input, seed, VARIANTS[v], path.length());
+				}
+			}
+			System.out.print(input + " mean:");
+			for(int v = 0; v < VARIANTS.length; v ++)
+				System.out.printf(" %s %.3f (%+.2f%%)", VARIANTS[v], sum[v] / seeds, 100.0 * (sum[v] - sum[0]) / sum[0]);
+			System.out.println("\n");
+		}
+		if(executor != null)
+			executor.shutdown();
+	}
+}
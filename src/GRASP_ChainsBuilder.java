@@ -1,5 +1,5 @@
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class GRASP_ChainsBuilder implements ChainsBuilder {
 	
@@ -7,22 +7,34 @@ public class GRASP_ChainsBuilder implements ChainsBuilder {
 	Truck truckModel;
 	double alpha;
 	int choices;
+	SplittableRandom random;
 	
 	public GRASP_ChainsBuilder(Field field, Truck truck, double alpha, int choices) {
+		this(field, truck, alpha, choices, new SplittableRandom());
+	}
+	
+	/**
+	 * @param field
+	 * @param truck
+	 * @param alpha
+	 * @param choices
+	 * @param random the only source of randomness: the chains depend only on its seed.
+	 */
+	
+	public GRASP_ChainsBuilder(Field field, Truck truck, double alpha, int choices, SplittableRandom random) {
 		this.field = field;
 		this.truckModel = truck;
 		this.alpha = alpha;
 		this.choices = choices;
+		this.random = random;
 	}
 	
 	public static double getGRASP_Threshold(final Truck truck, final Field field, double alpha) {
-		Coordinates nearest = truck.getTheNearestOfTheSameTypeDifferent(field);
-		if(nearest == null)
-			nearest = truck.getCurrentPosition();
-		Coordinates mostDistant = truck.getTheMostDistantOfTheSameType(field);
+		int nearest = truck.getTheNearestCellOfTheSameTypeDifferent(field);
+		int mostDistant = truck.getTheMostDistantCellOfTheSameType(field);
 		
-		double min = truck.distance(nearest);
-		double max = truck.distance(mostDistant);
+		double min = nearest == -1 ? 0.0 : truck.distance(field, nearest);
+		double max = truck.distance(field, mostDistant);
 		
 		return min + alpha * (max - min);
 	}
@@ -36,29 +48,29 @@ public class GRASP_ChainsBuilder implements ChainsBuilder {
 	 */
 	
 	public Truck getChainOfPeaks(final Truck lastTruck, long quantity) {
-		Coordinates from = lastTruck.getTheNearestPeak(field);
-		if(from == null)
+		int from = lastTruck.getTheNearestPeakCell(field);
+		if(from == -1)
 			return null;
-		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, from, 0);
+		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, field.getCoordinates(from), 0);
 		truck.move(truck.getCurrentPosition()); // just to add at least a movement
-		while(field.getQuantity(truck.getCurrentPosition()) < truck.capacity) {
-			Coordinates[] toAvoid = new Coordinates[choices + 1];
-			toAvoid[0] = truck.getCurrentPosition();
-			Coordinates[] nextPeaks = new Coordinates[choices];
-			for(int i = 0; i < choices; i ++) 
-				toAvoid[i + 1] = nextPeaks[i] = truck.getTheNearestPeakDifferentFromThese(field, toAvoid);
+		int current = from;
+		while(field.getQuantity(current) < truck.capacity) {
+			int[] nextPeaks = truck.getTheNearestPeakCellsDifferentFromThese(field, choices, current);
 			double GRASP_Threshold = getGRASP_Threshold(truck, field, alpha);
 			int ok = choices;
 			while(ok > 1) { // never less then 1
-				if(nextPeaks[ok - 1] != null)
-					if(truck.distance(nextPeaks[ok - 1]) <= GRASP_Threshold)
+				if(nextPeaks[ok - 1] != -1)
+					if(truck.distance(field, nextPeaks[ok - 1]) <= GRASP_Threshold)
 						break;
 				ok --;
 			}
-			truck.move(nextPeaks[new Random().nextInt(ok)], field.getQuantity(truck.getCurrentPosition()));
-			field.update(truck.getLastMovement());
+			int next = nextPeaks[random.nextInt(ok)];
+			long q = field.getQuantity(current);
+			truck.move(field.getCoordinates(next), q);
+			field.update(current, next, q);
+			current = next;
 		}
-		field.decrement(truck.getCurrentPosition(), truck.capacity);
+		field.decrement(current, truck.capacity);
 		return truck;
 	}
 	
@@ -72,8 +84,8 @@ public class GRASP_ChainsBuilder implements ChainsBuilder {
 	public ArrayList <Truck> getAllChainsOfPeaks() {
 		Truck lastTruck = truckModel.clone();
 		ArrayList <Truck> chainsOfPeaks = new ArrayList <> ();
-		while((lastTruck = getChainOfPeaks(lastTruck, truckModel.capacity)) != null) 
-			chainsOfPeaks.add(lastTruck);
+		while(field.numberOfPeaks() > 0) 
+			chainsOfPeaks.add(lastTruck = getChainOfPeaks(lastTruck, truckModel.capacity));
 		return chainsOfPeaks;
 	}
 	
@@ -90,27 +102,27 @@ public class GRASP_ChainsBuilder implements ChainsBuilder {
 		 * PAY ATTENTION: the truck has to bring in the first cell "quantity" units of terrain 
 		 * to fill the chain of holes.
 		 */
-		Coordinates from = lastTruck.getTheNearestHole(field);
-		if(from == null)
+		int from = lastTruck.getTheNearestHoleCell(field);
+		if(from == -1)
 			return null;
-		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, from, quantity);
-		field.increment(truck.getCurrentPosition(), truck.capacity);
-		while(field.getQuantity(truck.getCurrentPosition()) > 0) {
-			Coordinates[] toAvoid = new Coordinates[choices + 1];
-			toAvoid[0] = truck.getCurrentPosition();
-			Coordinates[] nextHoles = new Coordinates[choices];
-			for(int i = 0; i < choices; i ++)
-				toAvoid[i + 1] = nextHoles[i] = truck.getTheNearestHoleDifferentFromThese(field, toAvoid);
+		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, field.getCoordinates(from), quantity);
+		field.increment(from, truck.capacity);
+		int current = from;
+		while(field.getQuantity(current) > 0) {
+			int[] nextHoles = truck.getTheNearestHoleCellsDifferentFromThese(field, choices, current);
 			double GRASP_Threshold = getGRASP_Threshold(truck, field, alpha);
 			int ok = choices;
 			while(ok > 1) { // never less then 1
-				if(nextHoles[ok - 1] != null)
-					if(truck.distance(nextHoles[ok - 1]) <= GRASP_Threshold)
+				if(nextHoles[ok - 1] != -1)
+					if(truck.distance(field, nextHoles[ok - 1]) <= GRASP_Threshold)
 						break;
 				ok --;
 			}
-			truck.move(nextHoles[new Random().nextInt(ok)], field.getQuantity(truck.getCurrentPosition()));
-			field.update(truck.getLastMovement());
+			int next = nextHoles[random.nextInt(ok)];
+			long q = field.getQuantity(current);
+			truck.move(field.getCoordinates(next), q);
+			field.update(current, next, q);
+			current = next;
 		}
 		return truck;
 	}
@@ -125,8 +137,8 @@ public class GRASP_ChainsBuilder implements ChainsBuilder {
 	public ArrayList <Truck> getAllChainsOfHoles() {
 		Truck lastTruck = truckModel.clone();
 		ArrayList <Truck> chainsOfHoles = new ArrayList <> ();
-		while((lastTruck = getChainOfHoles(lastTruck, truckModel.capacity)) != null) 
-			chainsOfHoles.add(lastTruck);
+		while(field.numberOfHoles() > 0) 
+			chainsOfHoles.add(lastTruck = getChainOfHoles(lastTruck, truckModel.capacity));
 		return chainsOfHoles;
 	}
 	
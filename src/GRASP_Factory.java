@@ -1,7 +1,22 @@
+import java.util.SplittableRandom;
 
 public class GRASP_Factory implements ChainsBuildersFactory {
+	
+	double alpha;
+	int choices;
+	SplittableRandom random;
+	
+	public GRASP_Factory() {
+		this(0.1, 3, new SplittableRandom());
+	}
+	
+	public GRASP_Factory(double alpha, int choices, SplittableRandom random) {
+		this.alpha = alpha;
+		this.choices = choices;
+		this.random = random;
+	}
 
 	public ChainsBuilder getChainsBuilder(Field field, Truck truck) {
-		return new GRASP_ChainsBuilder(field, truck, 0.1, 3);
+		return new GRASP_ChainsBuilder(field, truck, alpha, choices, random);
 	}
 }
@@ -1,53 +1,559 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleConsumer;
 
-public class GRASP_Solver implements Solver {
+public class GRASP_Solver implements AnytimeSolver {
 	
 	Field field;
 	Truck truck;
 	final int TIMES1 = 5;
 	final int TIMES2 = 50;
 	final double THRESHOLD = 1E-5;
+	final int TIMES3 = 120; // iterations of reactive GRASP without a budget
+	
+	/*
+	 * Every iteration gets its own SplittableRandom, split from the one built with the seed 
+	 * (always in the same order), so the result depends only on the seed and not on the 
+	 * executor or on the scheduling of the iterations.
+	 * If executor is null the iterations are executed one after the other.
+	 */
+	
+	long seed;
+	ExecutorService executor;
+	AssignmentEngine assignment = new HungarianEngine(); // shared by the iterations
+	
+	/*
+	 * The iterations are dealt to LANES lanes (by id): the iterations of a lane run one after 
+	 * the other and share the warm starts of the assignments (one for each direction), so 
+	 * every assignment starts from the previous one of its lane and the result still does not 
+	 * depend on the executor.
+	 * 
+	 * A lane also has its own copy of the field: every iteration rolls it back to the
+	 * checkpoint at the end (see Field.checkpoint), instead of cloning the field.
+	 */
+	
+	static final int LANES = 8;
+	boolean warmStart = true;
+	
+	/*
+	 * An iteration stops as soon as its path cannot be shorter than the best one found so far 
+	 * (see OurSolver.setCutoff), which is read from the incumbent shared by the threads. The 
+	 * pruned iterations could not win, so the result does not change; but a pruned iteration 
+	 * may skip its assignments, and then the next ones of its lane start from older warm 
+	 * starts: with a warm started engine (like LAPJV) and more threads the ties of the 
+	 * assignments may be broken differently from a run to another.
+	 */
+	
+	boolean pruning = true;
+	
+	/*
+	 * Reactive GRASP: instead of the schedule of alpha (see solve), every iteration draws its 
+	 * alpha and its number of choices from the pairs of alphas x choices, with probabilities 
+	 * learnt from the lengths of the paths of each pair (see Reactive).
+	 */
+	
+	boolean reactive = false;
+	double[] alphas = {0.1, 0.05, 0.025, 0.0125, 0.00625, 0.003125, 0.0015625};
+	int[] choices = {2, 3, 4};
+	
+	/*
+	 * The ELITE best diverse solutions are kept (see ElitePool) and, after every block of 
+	 * iterations, every new pair of them is relinked in both directions (see PathRelinking): 
+	 * a relinked solution costs a walk on the order of the chains and a fixPath, not a whole 
+	 * iteration. It is off by default: without a budget the relinking comes on top of the 
+	 * TIMES1 / TIMES2 iterations, so it pays mostly with solve(budget) (see GRASP_Benchmark).
+	 */
+	
+	static final int ELITE = 10;
+	boolean relinking = false;
+	
+	/**
+	 * What the iterations of a lane share (built by the first iteration which needs it).
+	 */
+	
+	private class Lane {
+		Field field;
+		WarmStart warmStartPH, warmStartHP; // null if the engine does not support them
+		
+		Field field() {
+			if(field == null) {
+				field = GRASP_Solver.this.field.clone();
+				field.checkpoint();
+			}
+			return field;
+		}
+	}
 	
 	public GRASP_Solver(Field field, Truck truck) {
+		this(field, truck, System.nanoTime(), null);
+	}
+	
+	public GRASP_Solver(Field field, Truck truck, long seed) {
+		this(field, truck, seed, null);
+	}
+	
+	/**
+	 * @param field
+	 * @param truck
+	 * @param seed
+	 * @param executor the executor on which the iterations run (for example a ForkJoinPool).
+	 */
+	
+	public GRASP_Solver(Field field, Truck truck, long seed, ExecutorService executor) {
 		this.field = field;
 		this.truck = truck;
+		this.seed = seed;
+		this.executor = executor;
 	}
 	
-	public Path solve() {
-		double alpha = 0.1;
-		OurSolver ourSolver = new OurSolver(field.clone(), truck.clone(), new GRASP_Factory());
-		((GRASP_ChainsBuilder)(ourSolver.chainsBuilder)).alpha = alpha;
-		double bestAlpha = alpha;
-		Path bestPath = ourSolver.solve();
-		
-		while(alpha > THRESHOLD) {
-			System.out.println(alpha + " " + bestPath.length());
-			for(int i = 0; i < TIMES1; i ++) {
-				ourSolver = new OurSolver(field.clone(), truck.clone(), new GRASP_Factory());
-				((GRASP_ChainsBuilder)(ourSolver.chainsBuilder)).alpha = alpha;
-				Path currPath = ourSolver.solve();
-				
-				if(currPath.length() < bestPath.length()) {
-					bestPath = currPath;
-					bestAlpha = alpha;
+	/**
+	 * @param assignment the solver of the assignments between the chains (it must be 
+	 * thread safe if the iterations run in parallel).
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setAssignmentEngine(AssignmentEngine assignment) {
+		this.assignment = assignment;
+		return this;
+	}
+	
+	/**
+	 * @param warmStart if the assignments of an iteration start from the ones of the previous 
+	 * iteration of its lane (only for the engines which support it, like LAPJV: with the 
+	 * others the warm starts are not even allocated).
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setWarmStart(boolean warmStart) {
+		this.warmStart = warmStart;
+		return this;
+	}
+	
+	/**
+	 * @param pruning if the iterations which cannot beat the best path stop early.
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setPruning(boolean pruning) {
+		this.pruning = pruning;
+		return this;
+	}
+	
+	/**
+	 * @param reactive if alpha and the number of choices are learnt (reactive GRASP) instead of 
+	 * following the schedule.
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setReactive(boolean reactive) {
+		this.reactive = reactive;
+		return this;
+	}
+	
+	/**
+	 * Switches to reactive GRASP on the given values.
+	 * 
+	 * @param alphas
+	 * @param choices
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setReactive(double[] alphas, int[] choices) {
+		this.alphas = alphas.clone();
+		this.choices = choices.clone();
+		return setReactive(true);
+	}
+	
+	/**
+	 * @param relinking if the elite solutions are relinked.
+	 * @return this solver.
+	 */
+	
+	public GRASP_Solver setRelinking(boolean relinking) {
+		this.relinking = relinking;
+		return this;
+	}
+	
+	/**
+	 * The best path found so far. It is shared by the iterations and updated without 
+	 * locks: a new candidate replaces the current one (with a CAS) if it is shorter or if 
+	 * it is as long but comes from an earlier iteration, so that the winner is always the one
+	 * a sequential execution would choose.
+	 * 
+	 * Every improvement is published to the listener (if any), under a lock so that the 
+	 * listener sees decreasing lengths.
+	 */
+	
+	static class Incumbent {
+		
+		static class Candidate {
+			final Path path;
+			final double length;
+			final double alpha;
+			final int id;
+			
+			Candidate(Path path, double alpha, int id) {
+				this.path = path;
+				this.length = path.length();
+				this.alpha = alpha;
+				this.id = id;
+			}
+			
+			boolean betterThan(Candidate c) {
+				return c == null || length < c.length || (length == c.length && id < c.id);
+			}
+		}
+		
+		final AtomicReference <Candidate> best = new AtomicReference <> ();
+		final IncumbentListener listener;
+		double published = Double.MAX_VALUE;
+		
+		Incumbent(IncumbentListener listener) {
+			this.listener = listener;
+		}
+		
+		void offer(Candidate candidate) {
+			Candidate current = best.get();
+			while(candidate.betterThan(current)) {
+				if(best.compareAndSet(current, candidate)) {
+					publish(candidate.path, candidate.length);
+					return;
 				}
+				current = best.get();
 			}
-			alpha /= 2.0;
 		}
 		
-		for(int i = 0; i < TIMES2; i ++) {
-			ourSolver = new OurSolver(field.clone(), truck.clone(), new GRASP_Factory());
-			((GRASP_ChainsBuilder)(ourSolver.chainsBuilder)).alpha = bestAlpha;
-			Path currPath = ourSolver.solve();
-			
-			if(currPath.length() < bestPath.length()) 
-				bestPath = currPath;
+		synchronized void publish(Path path, double length) {
+			if(listener == null || length >= published)
+				return;
+			published = length;
+			listener.improved(path, length);
 		}
 		
-		Path NN_Path = new OurSolver(field.clone(), truck.clone(), new NearestNeighbourFactory()).solve();
+		Candidate get() {
+			return best.get();
+		}
+		
+		/**
+		 * The length of the best path (infinite if there is none).
+		 */
+		
+		double length() {
+			Candidate c = best.get();
+			return c == null ? Double.POSITIVE_INFINITY : c.length;
+		}
+	}
+	
+	/**
+	 * The probabilities of the pairs (alpha, choices) of reactive GRASP (Prais and Ribeiro). 
+	 * Every pair is tried once, then after every block of iterations the pair k gets 
+	 * q[k] = (best / mean[k]) ^ DELTA, where mean[k] is the mean length of its paths and best 
+	 * the shortest mean, and its probability is q[k] normalized: the pairs which give longer 
+	 * paths are drawn less and less, but never excluded.
+	 * 
+	 * The pairs of a block are drawn before it runs and the lengths are recorded after it, in 
+	 * the order of the iterations, so the result still depends only on the seed.
+	 */
+	
+	static class Reactive {
+		static final int BLOCK = 2 * LANES;
+		static final double DELTA = 100.0; // the means of the pairs differ by about 1% on the fields
+		
+		final double[] alphas;
+		final int[] choices;
+		final double[] sum, probability;
+		final int[] count;
+		
+		Reactive(double[] alphas, int[] choices) {
+			this.alphas = alphas;
+			this.choices = choices;
+			sum = new double[size()];
+			count = new int[size()];
+			probability = new double[size()];
+			Arrays.fill(probability, 1.0 / size());
+		}
+		
+		int size() {
+			return alphas.length * choices.length;
+		}
+		
+		double alpha(int k) {
+			return alphas[k / choices.length];
+		}
+		
+		int choices(int k) {
+			return choices[k % choices.length];
+		}
+		
+		int draw(SplittableRandom random) {
+			double r = random.nextDouble();
+			for(int k = 0; k < size() - 1; k ++) {
+				r -= probability[k];
+				if(r < 0.0)
+					return k;
+			}
+			return size() - 1;
+		}
+		
+		/**
+		 * @param k
+		 * @param length NaN if the iteration has not run.
+		 */
+		
+		void record(int k, double length) {
+			if(Double.isNaN(length))
+				return;
+			sum[k] += length;
+			count[k] ++;
+		}
+		
+		/**
+		 * Updates the probabilities (a pair never tried counts as the best one).
+		 */
+		
+		void update() {
+			double best = Double.POSITIVE_INFINITY;
+			for(int k = 0; k < size(); k ++)
+				if(count[k] > 0)
+					best = Math.min(best, sum[k] / count[k]);
+			if(best == Double.POSITIVE_INFINITY)
+				return;
+			double total = 0.0;
+			for(int k = 0; k < size(); k ++) {
+				probability[k] = count[k] > 0 ? Math.pow(best / (sum[k] / count[k]), DELTA) : 1.0;
+				total += probability[k];
+			}
+			for(int k = 0; k < size(); k ++)
+				probability[k] /= total;
+		}
+	}
+	
+	/**
+	 * An iteration of GRASP. It does nothing if the budget (if any) is over when it starts.
+	 * 
+	 * @param lane the lane of the iteration.
+	 * @param result gets the length of the path (if not null). For a pruned iteration it gets 
+	 * the lower bound at which it stopped (see OurSolver.getPrunedBound): it is greater than 
+	 * the best length at that time, so a pair of alpha and choices which is often pruned is 
+	 * penalized and not rewarded by Reactive.
+	 * @param pool gets the solution (if not null).
+	 */
+	
+	private Callable <Void> iteration(Incumbent incumbent, Budget budget, double alpha, int choices, int id, SplittableRandom random, Lane lane, DoubleConsumer result, ElitePool pool) {
+		return () -> {
+			if(budget != null && budget.isOver())
+				return null;
+			Field f = lane.field();
+			OurSolver ourSolver = new OurSolver(f, truck.clone(), new GRASP_Factory(alpha, choices, random), assignment);
+			if(warmStart && assignment.supportsWarmStart()) {
+				if(lane.warmStartPH == null) {
+					lane.warmStartPH = new WarmStart(field.size());
+					lane.warmStartHP = new WarmStart(field.size());
+				}
+				ourSolver.setWarmStarts(lane.warmStartPH, lane.warmStartHP);
+			}
+			if(pruning)
+				ourSolver.setCutoff(incumbent::length);
+			ourSolver.setKeepChains(pool != null);
+			try {
+				Path path = ourSolver.solve();
+				if(path != null)
+					incumbent.offer(new Incumbent.Candidate(path, alpha, id));
+				if(path != null && pool != null && ourSolver.getStart() != null)
+					pool.add(ourSolver.getStart(), ourSolver.getChains(), path.length(), alpha, id);
+				if(result != null)
+					result.accept(path != null ? path.length() : ourSolver.getPrunedBound());
+			} finally {
+				f.rollback();
+			}
+			return null;
+		};
+	}
+	
+	/**
+	 * Merges the solutions of the last iterations into pool and relinks every pair of its 
+	 * solutions not relinked yet (in both directions), in parallel. The relinked solutions 
+	 * are offered to the incumbent and to the pool in the order of the pairs.
+	 * 
+	 * @param relinked the pairs of ids already relinked.
+	 * @param id the id of the first relinked solution.
+	 * @return the id of the next solution.
+	 */
+	
+	private int relink(ElitePool pool, HashSet <Long> relinked, Incumbent incumbent, Budget budget, int id, List <List <Callable <Void>>> lanes) {
+		pool.merge();
+		List <ElitePool.Solution> solutions = pool.solutions();
+		List <ElitePool.Solution[]> pairs = new ArrayList <> ();
+		for(ElitePool.Solution a : solutions)
+			for(ElitePool.Solution b : solutions)
+				if(a != b && relinked.add(((long) a.id << 32) | b.id))
+					pairs.add(new ElitePool.Solution[] {a, b});
+		ArrayList <ArrayList <Truck>> chains = new ArrayList <> ();
+		Path[] paths = new Path[pairs.size()];
+		PathRelinking relinking = new PathRelinking();
+		for(int t = 0; t < pairs.size(); t ++) {
+			ElitePool.Solution a = pairs.get(t)[0];
+			ElitePool.Solution b = pairs.get(t)[1];
+			int slot = t;
+			chains.add(null);
+			lanes.get(t % LANES).add(() -> {
+				if(budget != null && budget.isOver())
+					return null;
+				ArrayList <Truck> c = relinking.relink(a.chains, b.chains, a.start.path.getLastX(), a.start.path.getLastY());
+				if(c != null) {
+					chains.set(slot, c);
+					paths[slot] = OurSolver.pathOf(a.start, c);
+				}
+				return null;
+			});
+		}
+		run(lanes);
+		for(int t = 0; t < pairs.size(); t ++)
+			if(paths[t] != null) {
+				ElitePool.Solution a = pairs.get(t)[0];
+				incumbent.offer(new Incumbent.Candidate(paths[t], a.alpha, id));
+				pool.add(a.start, chains.get(t), paths[t].length(), a.alpha, id ++);
+			}
+		pool.merge();
+		return id;
+	}
+	
+	/**
+	 * Runs the lanes (each one on a single thread) and waits for them.
+	 */
+	
+	private void run(List <List <Callable <Void>>> lanes) {
+		List <Callable <Void>> tasks = new ArrayList <> ();
+		for(List <Callable <Void>> lane : lanes)
+			if(!lane.isEmpty())
+				tasks.add(() -> {
+					for(Callable <Void> iteration : lane)
+						iteration.call();
+					return null;
+				});
+		try {
+			if(executor == null) {
+				for(Callable <Void> task : tasks)
+					task.call();
+				return;
+			}
+			for(Future <Void> f : executor.invokeAll(tasks))
+				f.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch(ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} catch(Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			for(List <Callable <Void>> lane : lanes)
+				lane.clear();
+		}
+	}
+	
+	public Path solve() {
+		return solve(null, new Incumbent(null));
+	}
+	
+	/**
+	 * The same search of solve(), but the nearest neighbour path is built first (so that 
+	 * there is always an answer) and then the iterations with the best alpha (or the 
+	 * reactive ones) go on until the budget is over.
+	 */
+	
+	public Path solve(long budget, CancellationToken token, IncumbentListener listener) {
+		return solve(new Budget(budget, token), new Incumbent(listener));
+	}
+	
+	private Path solve(Budget budget, Incumbent incumbent) {
+		Path NN_Path = null;
+		if(budget != null) {
+			NN_Path = new OurSolver(field.clone(), truck.clone(), new NearestNeighbourFactory(), assignment).solve();
+			incumbent.publish(NN_Path, NN_Path.length());
+		}
+		
+		SplittableRandom random = new SplittableRandom(seed);
+		int id = 0;
+		List <List <Callable <Void>>> lanes = new ArrayList <> ();
+		Lane[] lane = new Lane[LANES];
+		for(int l = 0; l < LANES; l ++) {
+			lanes.add(new ArrayList <> ());
+			lane[l] = new Lane();
+		}
+		
+		ElitePool pool = relinking ? new ElitePool(ELITE, field) : null;
+		HashSet <Long> relinked = new HashSet <> ();
+		
+		if(reactive) {
+			Reactive r = new Reactive(alphas, choices);
+			SplittableRandom draws = random.split();
+			double[] lengths = new double[Math.max(r.size(), Reactive.BLOCK)];
+			int[] drawn = new int[lengths.length];
+			int done = 0;
+			do {
+				int size = done == 0 ? r.size() : Reactive.BLOCK;
+				Arrays.fill(lengths, Double.NaN);
+				for(int i = 0; i < size; i ++) {
+					drawn[i] = done == 0 ? i : r.draw(draws);
+					int slot = i;
+					int l = id % LANES;
+					lanes.get(l).add(iteration(incumbent, budget, r.alpha(drawn[i]), r.choices(drawn[i]), id ++, random.split(), lane[l], (double length) -> lengths[slot] = length, pool));
+				}
+				run(lanes);
+				for(int i = 0; i < size; i ++)
+					r.record(drawn[i], lengths[i]);
+				r.update();
+				if(pool != null)
+					id = relink(pool, relinked, incumbent, budget, id, lanes);
+				done += size;
+			} while(budget != null ? !budget.isOver() : done < TIMES3);
+		} else {
+			
+			/*
+			 * First we look for the best alpha...
+			 */
+			
+			lanes.get(0).add(iteration(incumbent, budget, 0.1, 3, id ++, random.split(), lane[0], null, pool));
+			for(double alpha = 0.1; alpha > THRESHOLD; alpha /= 2.0)
+				for(int i = 0; i < TIMES1; i ++) {
+					int l = id % LANES;
+					lanes.get(l).add(iteration(incumbent, budget, alpha, 3, id ++, random.split(), lane[l], null, pool));
+				}
+			run(lanes);
+			if(pool != null)
+				id = relink(pool, relinked, incumbent, budget, id, lanes); // a relinked solution keeps the alpha of its first one
+			
+			double bestAlpha = incumbent.get() == null ? 0.1 : incumbent.get().alpha;
+			
+			/*
+			 * ... then we insist on it.
+			 */
+			
+			do {
+				for(int i = 0; i < TIMES2; i ++) {
+					int l = id % LANES;
+					lanes.get(l).add(iteration(incumbent, budget, bestAlpha, 3, id ++, random.split(), lane[l], null, pool));
+				}
+				run(lanes);
+				if(pool != null)
+					id = relink(pool, relinked, incumbent, budget, id, lanes);
+			} while(budget != null && !budget.isOver());
+		}
 		
-		if(NN_Path.length() < bestPath.length()) 
-			bestPath = NN_Path;
+		if(NN_Path == null)
+			NN_Path = new OurSolver(field.clone(), truck.clone(), new NearestNeighbourFactory(), assignment).solve();
 		
-		return bestPath;
+		if(incumbent.get() == null || NN_Path.length() < incumbent.get().length) 
+			return NN_Path;
+		return incumbent.get().path;
 	}
 }
@@ -0,0 +1,106 @@
+/**
+ * The geometry of the hot paths on primitive doubles: nothing is allocated, so these 
+ * methods can be called in the inner loops of the solvers. Vector2D and Coordinates 
+ * are built on them and give exactly the same results.
+ * 
+ * The methods which produce a vector write it in out (out[0] = x, out[1] = y).
+ */
+
+public final class Geometry {
+	
+	private Geometry() {}
+	
+	public static double squaredDistance(double x1, double y1, double x2, double y2) {
+		double dx = x1 - x2;
+		double dy = y1 - y2;
+		return dx * dx + dy * dy;
+	}
+	
+	public static double distance(double x1, double y1, double x2, double y2) {
+		return Math.sqrt(squaredDistance(x1, y1, x2, y2));
+	}
+	
+	public static double norm(double x, double y) {
+		return Math.sqrt(x * x + y * y);
+	}
+	
+	public static double dot(double ux, double uy, double vx, double vy) {
+		return ux * vx + uy * vy;
+	}
+	
+	/**
+	 * The z component of the cross product u x v: positive if v is counterclockwise 
+	 * from u, negative if it is clockwise, 0 if they are parallel.
+	 */
+	
+	public static double cross(double ux, double uy, double vx, double vy) {
+		return ux * vy - uy * vx;
+	}
+	
+	/**
+	 * The orientation of the triangle abc: 1 if counterclockwise, -1 if clockwise, 0 if 
+	 * the points are aligned.
+	 */
+	
+	public static int orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+		return (int)Math.signum(cross(bx - ax, by - ay, cx - ax, cy - ay));
+	}
+	
+	/**
+	 * True if v is clockwise (or parallel) from u.
+	 */
+	
+	public static boolean clockwise(double ux, double uy, double vx, double vy) {
+		return cross(ux, uy, vx, vy) <= 0.0;
+	}
+	
+	/**
+	 * The (unsigned) angle between u and v, in [0, PI].
+	 */
+	
+	public static double angle(double ux, double uy, double vx, double vy) {
+		double cos = dot(ux, uy, vx, vy) / (norm(ux, uy) * norm(vx, vy));
+		
+		/*
+		 * The approximation of floating point representation could make it 
+		 * possible.
+		 */
+		
+		if(cos < -1.0)
+			cos = -1.0;
+		if(cos > 1.0)
+			cos = 1.0;
+		
+		return Math.acos(cos);
+	}
+	
+	/**
+	 * The angle executed by a truck which arrived to b from a to go to c.
+	 */
+	
+	public static double angle(double ax, double ay, double bx, double by, double cx, double cy) {
+		return angle(bx - ax, by - ay, cx - bx, cy - by);
+	}
+	
+	public static void rotate(double x, double y, double alpha, double[] out) {
+		double cos = Math.cos(alpha);
+		double sin = Math.sin(alpha);
+		out[0] = x * cos - y * sin;
+		out[1] = x * sin + y * cos;
+	}
+	
+	public static void setLength(double x, double y, double length, double[] out) {
+		double k = 1.0 / norm(x, y);
+		out[0] = k * x * length;
+		out[1] = k * y * length;
+	}
+	
+	/**
+	 * Rotates (x, y) by alpha and sets its length.
+	 */
+	
+	public static void vectorByAngle(double x, double y, double alpha, double length, double[] out) {
+		rotate(x, y, alpha, out);
+		setLength(out[0], out[1], length, out);
+	}
+}
@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds the chains along a Hilbert curve: the peaks and the holes are sorted once by the 
+ * position of their cells on the curve, then every chain takes the next peaks (or holes) in 
+ * that order until it has collected (or spread) its quantity, exactly as the chains of 
+ * GRASP_ChainsBuilder do. Consecutive cells on the curve are near in the field, so the chains 
+ * are a little longer than the ones of the nearest neighbour, but no search is needed: the 
+ * chains cost O(n log n) for the sorting and O(1) for every step.
+ * 
+ * Every cell before the current one in the order is done (a chain moves all the terrain of a 
+ * cell but the last one), so the next peak (or hole) is found by moving forward only.
+ */
+
+public class HilbertChainsBuilder implements ChainsBuilder {
+	
+	public static final int ORDER = 16; // the curve fills a grid of 2^ORDER x 2^ORDER
+	
+	Field field;
+	Truck truckModel;
+	int[] peaks, holes; // along the curve (null until the first chain)
+	int nextPeak, nextHole;
+	
+	public HilbertChainsBuilder(Field field, Truck truck) {
+		this.field = field;
+		this.truckModel = truck;
+	}
+	
+	/**
+	 * The position of (x, y) on the Hilbert curve which fills the grid of side 2^ORDER.
+	 */
+	
+	static long hilbert(int x, int y) {
+		int n = 1 << ORDER;
+		long d = 0;
+		for(int s = n / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if(ry == 0) {
+				if(rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+	
+	/**
+	 * Sorts the peaks and the holes of the field along the curve.
+	 */
+	
+	private void sort() {
+		int n = field.size();
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i ++) {
+			minX = Math.min(minX, field.getX(i));
+			minY = Math.min(minY, field.getY(i));
+			maxX = Math.max(maxX, field.getX(i));
+			maxY = Math.max(maxY, field.getY(i));
+		}
+		
+		/*
+		 * The same scale on both the axes (the cells keep their distances) and (position on 
+		 * the curve, cell) in a long: the curve takes 2 * ORDER bits, the cell 31.
+		 */
+		
+		double scale = ((1 << ORDER) - 1) / Math.max(Math.max(maxX - minX, maxY - minY), Double.MIN_NORMAL);
+		long[] keysOfPeaks = new long[field.numberOfPeaks()];
+		long[] keysOfHoles = new long[field.numberOfHoles()];
+		int p = 0;
+		int h = 0;
+		for(int i = 0; i < n; i ++)
+			if(field.isAPeak(i) || field.isAnHole(i)) {
+				long key = hilbert((int) ((field.getX(i) - minX) * scale), (int) ((field.getY(i) - minY) * scale)) << 31 | i;
+				if(field.isAPeak(i))
+					keysOfPeaks[p ++] = key;
+				else
+					keysOfHoles[h ++] = key;
+			}
+		peaks = cells(keysOfPeaks);
+		holes = cells(keysOfHoles);
+	}
+	
+	private static int[] cells(long[] keys) {
+		Arrays.parallelSort(keys);
+		int[] cells = new int[keys.length];
+		for(int k = 0; k < keys.length; k ++)
+			cells[k] = (int) (keys[k] & Integer.MAX_VALUE);
+		return cells;
+	}
+	
+	/**
+	 * @return the first peak after nextPeak (included) along the curve, -1 if there is none.
+	 */
+	
+	private int nextPeak() {
+		if(peaks == null)
+			sort();
+		while(nextPeak < peaks.length && !field.isAPeak(peaks[nextPeak]))
+			nextPeak ++;
+		return nextPeak < peaks.length ? peaks[nextPeak] : -1;
+	}
+	
+	private int nextHole() {
+		if(holes == null)
+			sort();
+		while(nextHole < holes.length && !field.isAnHole(holes[nextHole]))
+			nextHole ++;
+		return nextHole < holes.length ? holes[nextHole] : -1;
+	}
+	
+	/**
+	 * Creates a path of peaks to collect the required quantity of terrain, from the next peak 
+	 * along the curve (lastTruck is not used).
+	 * 
+	 * @param lastTruck
+	 * @param quantity the quantity of terrain we want to leave at the end of the chain.
+	 * @return the path.
+	 */
+	
+	public Truck getChainOfPeaks(final Truck lastTruck, long quantity) {
+		int from = nextPeak();
+		if(from == -1)
+			return null;
+		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, field.getCoordinates(from), 0);
+		truck.move(truck.getCurrentPosition()); // just to add at least a movement
+		int current = from;
+		while(field.getQuantity(current) < truck.capacity) {
+			nextPeak ++; // current is not a peak any more
+			int next = nextPeak();
+			long q = field.getQuantity(current);
+			truck.move(field.getCoordinates(next), q);
+			field.update(current, next, q);
+			current = next;
+		}
+		field.decrement(current, truck.capacity);
+		return truck;
+	}
+	
+	public ArrayList <Truck> getAllChainsOfPeaks() {
+		Truck lastTruck = truckModel.clone();
+		ArrayList <Truck> chainsOfPeaks = new ArrayList <> ();
+		while(field.numberOfPeaks() > 0) 
+			chainsOfPeaks.add(lastTruck = getChainOfPeaks(lastTruck, truckModel.capacity));
+		return chainsOfPeaks;
+	}
+	
+	/**
+	 * Creates a path of holes to spread the required quantity of terrain, from the next hole 
+	 * along the curve (lastTruck is not used).
+	 * 
+	 * @param lastTruck
+	 * @param quantity the quantity of terrain we want to spread along the chain.
+	 * @return the path.
+	 */
+	
+	public Truck getChainOfHoles(final Truck lastTruck, long quantity) {
+		int from = nextHole();
+		if(from == -1)
+			return null;
+		Truck truck = new Truck(quantity, truckModel.gamma, truckModel.S, field.getCoordinates(from), quantity);
+		field.increment(from, truck.capacity);
+		int current = from;
+		while(field.getQuantity(current) > 0) {
+			nextHole ++; // current is not a hole any more
+			int next = nextHole();
+			long q = field.getQuantity(current);
+			truck.move(field.getCoordinates(next), q);
+			field.update(current, next, q);
+			current = next;
+		}
+		return truck;
+	}
+	
+	public ArrayList <Truck> getAllChainsOfHoles() {
+		Truck lastTruck = truckModel.clone();
+		ArrayList <Truck> chainsOfHoles = new ArrayList <> ();
+		while(field.numberOfHoles() > 0) 
+			chainsOfHoles.add(lastTruck = getChainOfHoles(lastTruck, truckModel.capacity));
+		return chainsOfHoles;
+	}
+	
+	/**
+	 * Moves the minimum quantity of terrain necessary to have 
+	 * "field.terrainToMove()" multiple of "truck.capacity".
+	 */
+	
+	public void fixField() {
+		long remainder = field.terrainToMove() % truckModel.capacity;
+		if(remainder == 0)
+			return;
+		truckModel.move(getChainOfPeaks(truckModel, remainder).path);
+		truckModel.move(getChainOfHoles(truckModel, remainder).path);
+	}
+}
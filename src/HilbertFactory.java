@@ -0,0 +1,7 @@
+
+public class HilbertFactory implements ChainsBuildersFactory {
+
+	public ChainsBuilder getChainsBuilder(Field field, Truck truck) {
+		return new HilbertChainsBuilder(field, truck);
+	}
+}
@@ -65,28 +65,42 @@ public class HungarianAlgorithm {
    *          addition, all entries must be non-infinite numbers.
    */
   public HungarianAlgorithm(double[][] costMatrix) {
-    this.dim = Math.max(costMatrix.length, costMatrix[0].length);
-    this.rows = costMatrix.length;
-    this.cols = costMatrix[0].length;
-    this.costMatrix = new double[this.dim][this.dim];
-    for (int w = 0; w < this.dim; w++) {
-      if (w < costMatrix.length) {
-        if (costMatrix[w].length != this.cols) {
-          throw new IllegalArgumentException("Irregular cost matrix");
-        }
-        for (int j = 0; j < this.cols; j++) {
-          if (Double.isInfinite(costMatrix[w][j])) {
-            throw new IllegalArgumentException("Infinite cost");
-          }
-          if (Double.isNaN(costMatrix[w][j])) {
-            throw new IllegalArgumentException("NaN cost");
-          }
-        }
-        this.costMatrix[w] = Arrays.copyOf(costMatrix[w], this.dim);
-      } else {
-        this.costMatrix[w] = new double[this.dim];
+    this(squareCopy(costMatrix), costMatrix.length, costMatrix[0].length);
+  }
+
+  /**
+   * Construct an instance of the algorithm on a square matrix which it adopts
+   * as it is, without copying it (the algorithm modifies it).
+   * 
+   * @param squareMatrix
+   *          the dim x dim cost matrix: its first rows x cols entries are the
+   *          costs, the other ones must be 0. All the entries must be
+   *          non-infinite numbers.
+   * @param rows
+   *          the number of workers.
+   * @param cols
+   *          the number of jobs.
+   */
+  public static HungarianAlgorithm adopt(double[][] squareMatrix, int rows, int cols) {
+    for (double[] row : squareMatrix) {
+      if (row.length != squareMatrix.length) {
+        throw new IllegalArgumentException("Irregular cost matrix");
       }
     }
+    if (squareMatrix.length != Math.max(rows, cols)) {
+      throw new IllegalArgumentException("The cost matrix is not dim x dim");
+    }
+    for (int w = 0; w < rows; w++) {
+      checkCosts(squareMatrix[w], cols);
+    }
+    return new HungarianAlgorithm(squareMatrix, rows, cols);
+  }
+
+  private HungarianAlgorithm(double[][] squareMatrix, int rows, int cols) {
+    this.dim = squareMatrix.length;
+    this.rows = rows;
+    this.cols = cols;
+    this.costMatrix = squareMatrix;
     labelByWorker = new double[this.dim];
     labelByJob = new double[this.dim];
     minSlackWorkerByJob = new int[this.dim];
@@ -99,6 +113,38 @@ public class HungarianAlgorithm {
     Arrays.fill(matchWorkerByJob, -1);
   }
 
+  /**
+   * The dim x dim copy of a cost matrix (the missing rows or columns cost 0).
+   */
+  private static double[][] squareCopy(double[][] costMatrix) {
+    int cols = costMatrix[0].length;
+    int dim = Math.max(costMatrix.length, cols);
+    double[][] squareMatrix = new double[dim][];
+    for (int w = 0; w < dim; w++) {
+      if (w < costMatrix.length) {
+        if (costMatrix[w].length != cols) {
+          throw new IllegalArgumentException("Irregular cost matrix");
+        }
+        checkCosts(costMatrix[w], cols);
+        squareMatrix[w] = Arrays.copyOf(costMatrix[w], dim);
+      } else {
+        squareMatrix[w] = new double[dim];
+      }
+    }
+    return squareMatrix;
+  }
+
+  private static void checkCosts(double[] row, int cols) {
+    for (int j = 0; j < cols; j++) {
+      if (Double.isInfinite(row[j])) {
+        throw new IllegalArgumentException("Infinite cost");
+      }
+      if (Double.isNaN(row[j])) {
+        throw new IllegalArgumentException("NaN cost");
+      }
+    }
+  }
+
   /**
    * Compute an initial feasible solution by assigning zero labels to the
    * workers and by assigning to each job a label equal to the minimum cost
@@ -0,0 +1,33 @@
+/**
+ * The AssignmentEngine of HungarianAlgorithm (O(n^3) on the full matrix).
+ */
+
+public class HungarianEngine implements AssignmentEngine {
+	
+	public int[] getAssignment(double[][] costs) {
+		if(costs.length == 0)
+			return new int[0];
+		return new HungarianAlgorithm(costs).execute();
+	}
+	
+	/**
+	 * The matrix is copied once, straight into the square double[][] which HungarianAlgorithm 
+	 * adopts without copying it again. The storage is never the only copy here, so AUTO keeps 
+	 * it DOUBLE for this engine (see DistanceMatrix.Storage.forEngine).
+	 */
+	
+	public int[] getAssignment(DistanceMatrix costs) {
+		int rows = costs.rows();
+		int columns = costs.columns();
+		if(rows == 0)
+			return new int[0];
+		int dim = Math.max(rows, columns);
+		double[][] square = new double[dim][dim];
+		for(int i = 0; i < rows; i ++) {
+			double[] row = costs.row(i, square[i]);
+			if(row != square[i])
+				System.arraycopy(row, 0, square[i], 0, columns);
+		}
+		return HungarianAlgorithm.adopt(square, rows, columns).execute();
+	}
+}
@@ -0,0 +1,9 @@
+/**
+ * Receives the paths which improve the best one found so far by an anytime solver 
+ * (every path is shorter than the previous one). It can be called by the threads of the 
+ * solver, so it should return quickly, and it must not modify the path.
+ */
+
+public interface IncumbentListener {
+	public void improved(Path path, double length);
+}
@@ -0,0 +1,578 @@
+import java.util.Arrays;
+
+/**
+ * The Jonker-Volgenant algorithm for the linear assignment problem.
+ * 
+ * Full matrix (the classic LAPJV): column reduction, reduction transfer, two passes of
+ * augmenting row reduction and then a shortest augmenting path (Dijkstra on the reduced
+ * costs, O(n^2)) for every row still free. The initialization usually leaves only a few rows
+ * free, which is why it is much faster than the Hungarian algorithm on the same matrix.
+ * 
+ * Sparse graph: the shortest augmenting paths run on the edges only (with a heap), so a
+ * k-nearest candidate graph costs about O(n * k log n) instead of O(n^2) for each augmentation.
+ * 
+ * In both cases the duals keep: c[i][j] - u[i] - v[j] >= 0 for every edge and = 0 for the
+ * edges of the assignment (u is implicit in the dense version).
+ * 
+ * Warm start (full matrix): the potentials v and the matching of the previous problem are
+ * feasible for any new matrix once u is computed again, so only the rows which lost their
+ * column need an augmenting path.
+ */
+
+public class LAPJV implements AssignmentEngine {
+	
+	public int[] getAssignment(double[][] costs) {
+		if(costs.length == 0)
+			return new int[0];
+		double[][] c = AssignmentEngine.square(costs);
+		int[] x = solve(DistanceMatrix.of(c), new double[c.length]);
+		return AssignmentEngine.truncate(x, costs.length, costs[0].length);
+	}
+	
+	public boolean readsRows() {
+		return true;
+	}
+	
+	public boolean supportsWarmStart() {
+		return true;
+	}
+	
+	/**
+	 * Reads the matrix as it is (by rows), without copying it.
+	 */
+	
+	public int[] getAssignment(DistanceMatrix costs) {
+		if(costs.rows() == 0)
+			return new int[0];
+		DistanceMatrix c = DistanceMatrix.square(costs);
+		int[] x = solve(c, new double[c.rows()]);
+		return AssignmentEngine.truncate(x, costs.rows(), costs.columns());
+	}
+	
+	/**
+	 * @param c the (square) matrix.
+	 * @param v the column potentials (output).
+	 * @return for each row its column.
+	 */
+	
+	static int[] solve(DistanceMatrix c, double[] v) {
+		int n = c.rows();
+		int[] x = new int[n]; // column of each row
+		int[] y = new int[n]; // row of each column
+		Arrays.fill(x, -1);
+		Arrays.fill(y, -1);
+		if(n == 1) {
+			x[0] = 0;
+			v[0] = c.get(0, 0);
+			return x;
+		}
+		int[] free = new int[n];
+		double[] buffer = new double[n];
+		augment(c, buffer, v, x, y, free, initialize(c, buffer, v, x, y, free));
+		return x;
+	}
+	
+	/**
+	 * Solves costs (square) starting from the potentials and the matching remembered by the 
+	 * warm start, which is then updated. The other matrices are solved from scratch.
+	 */
+	
+	public int[] getAssignment(double[][] costs, int[] rowKeys, int[] columnKeys, WarmStart warmStart) {
+		if(costs.length == 0)
+			return new int[0];
+		return getAssignment(DistanceMatrix.of(costs), rowKeys, columnKeys, warmStart);
+	}
+	
+	public int[] getAssignment(DistanceMatrix costs, int[] rowKeys, int[] columnKeys, WarmStart warmStart) {
+		int n = costs.rows();
+		if(n < 2 || costs.columns() != n || warmStart == null)
+			return getAssignment(costs);
+		double[] v = new double[n];
+		int[] x = new int[n];
+		int[] y = new int[n];
+		Arrays.fill(x, -1);
+		Arrays.fill(y, -1);
+		int[] free = new int[n];
+		double[] buffer = new double[n];
+		int numberOfFree;
+		if(warmStart.isEmpty())
+			numberOfFree = initialize(costs, buffer, v, x, y, free);
+		else
+			numberOfFree = initialize(costs, buffer, rowKeys, columnKeys, warmStart, v, x, y, free);
+		augment(costs, buffer, v, x, y, free, numberOfFree);
+		warmStart.save(rowKeys, columnKeys, v, x);
+		return x;
+	}
+	
+	/**
+	 * The initialization from scratch (n > 1): v, the partial matching (x, y) and the free rows.
+	 * 
+	 * @return the number of free rows.
+	 */
+	
+	private static int initialize(DistanceMatrix c, double[] buffer, double[] v, int[] x, int[] y, int[] free) {
+		int n = c.rows();
+		
+		/*
+		 * Column reduction: v[j] is the minimum of the column, which is assigned to the row
+		 * of the minimum if that row is still free (the rows are scanned by row for the cache).
+		 */
+		
+		int[] argmin = new int[n];
+		Arrays.fill(v, Double.POSITIVE_INFINITY);
+		for(int i = 0; i < n; i ++) {
+			double[] row = c.row(i, buffer);
+			for(int j = 0; j < n; j ++)
+				if(row[j] < v[j]) {
+					v[j] = row[j];
+					argmin[j] = i;
+				}
+		}
+		int[] matches = new int[n];
+		for(int j = n - 1; j >= 0; j --) {
+			int i = argmin[j];
+			if(++ matches[i] == 1) {
+				x[i] = j;
+				y[j] = i;
+			} else if(v[j] < v[x[i]]) {
+				y[x[i]] = -1;
+				x[i] = j;
+				y[j] = i;
+			}
+		}
+		
+		/*
+		 * Reduction transfer: a row assigned only once gives to its column the gap to its
+		 * second best column.
+		 */
+		
+		int numberOfFree = 0;
+		for(int i = 0; i < n; i ++) {
+			if(matches[i] == 0) {
+				free[numberOfFree ++] = i;
+				continue;
+			}
+			if(matches[i] > 1)
+				continue;
+			int j1 = x[i];
+			double[] row = c.row(i, buffer);
+			double min = Double.POSITIVE_INFINITY;
+			for(int j = 0; j < n; j ++)
+				if(j != j1)
+					min = Math.min(min, row[j] - v[j]);
+			v[j1] -= min;
+		}
+		
+		/*
+		 * Augmenting row reduction: a free row takes its best column (stealing it) and lowers
+		 * its price so that the previous row wants it less. The row which lost the column is
+		 * examined again at once, at most n times for each pass (the limit is only there
+		 * because of the floating point), then it is left to the augmentation.
+		 */
+		
+		for(int pass = 0; pass < 2 && numberOfFree > 0; pass ++) {
+			int k = 0;
+			int previousNumberOfFree = numberOfFree;
+			numberOfFree = 0;
+			int steps = 0;
+			while(k < previousNumberOfFree) {
+				int i = free[k ++];
+				double[] row = c.row(i, buffer);
+				double umin = row[0] - v[0];
+				double usubmin = Double.POSITIVE_INFINITY;
+				int j1 = 0;
+				int j2 = -1;
+				for(int j = 1; j < n; j ++) {
+					double h = row[j] - v[j];
+					if(h < usubmin) {
+						if(h >= umin) {
+							usubmin = h;
+							j2 = j;
+						} else {
+							usubmin = umin;
+							umin = h;
+							j2 = j1;
+							j1 = j;
+						}
+					}
+				}
+				int i0 = y[j1];
+				boolean lowered = umin < usubmin;
+				if(lowered)
+					v[j1] -= usubmin - umin;
+				else if(i0 >= 0) {
+					j1 = j2;
+					i0 = y[j2];
+				}
+				x[i] = j1;
+				y[j1] = i;
+				if(i0 >= 0) {
+					x[i0] = -1;
+					if(lowered && steps ++ < n)
+						free[-- k] = i0;
+					else
+						free[numberOfFree ++] = i0;
+				}
+			}
+		}
+		
+		return numberOfFree;
+	}
+	
+	/**
+	 * The initialization from a warm start: the potentials of the columns are the remembered 
+	 * ones (the minimum of the column for a new key) and every row gets the best reduced cost 
+	 * u[i] = min(c[i][j] - v[j]), so the duals are feasible whatever v is. Then a row keeps the 
+	 * column it had (a column with the same key) if it is still free and tight, otherwise it 
+	 * takes its best column if free.
+	 * 
+	 * @return the number of free rows.
+	 */
+	
+	private static int initialize(DistanceMatrix c, double[] buffer, int[] rowKeys, int[] columnKeys, WarmStart warmStart, double[] v, int[] x, int[] y, int[] free) {
+		int n = c.rows();
+		boolean unknown = false;
+		for(int j = 0; j < n; j ++) {
+			v[j] = columnKeys[j] >= 0 ? warmStart.price[columnKeys[j]] : Double.NaN;
+			unknown |= Double.isNaN(v[j]);
+		}
+		if(unknown) {
+			double[] min = new double[n];
+			Arrays.fill(min, Double.POSITIVE_INFINITY);
+			for(int i = 0; i < n; i ++) {
+				double[] row = c.row(i, buffer);
+				for(int j = 0; j < n; j ++)
+					min[j] = Math.min(min[j], row[j]);
+			}
+			for(int j = 0; j < n; j ++)
+				if(Double.isNaN(v[j]))
+					v[j] = min[j];
+		}
+		
+		int[] head = warmStart.head;
+		int[] next = new int[n]; // the columns with the same key
+		for(int j = n - 1; j >= 0; j --)
+			if(columnKeys[j] >= 0) {
+				next[j] = head[columnKeys[j]];
+				head[columnKeys[j]] = j;
+			}
+		
+		int numberOfFree = 0;
+		for(int i = 0; i < n; i ++) {
+			double[] row = c.row(i, buffer);
+			double u = Double.POSITIVE_INFINITY;
+			int best = -1;
+			for(int j = 0; j < n; j ++) {
+				double h = row[j] - v[j];
+				if(h < u) {
+					u = h;
+					best = j;
+				}
+			}
+			int previous = rowKeys[i] >= 0 ? warmStart.match[rowKeys[i]] : -1;
+			if(previous >= 0)
+				for(int j = head[previous]; j != -1; j = next[j])
+					if(y[j] < 0 && row[j] - v[j] == u) {
+						best = j;
+						break;
+					}
+			if(y[best] < 0) {
+				x[i] = best;
+				y[best] = i;
+			} else
+				free[numberOfFree ++] = i;
+		}
+		
+		for(int j = 0; j < n; j ++)
+			if(columnKeys[j] >= 0)
+				head[columnKeys[j]] = -1;
+		return numberOfFree;
+	}
+	
+	/**
+	 * Augmentation: Dijkstra from every free row. Every assigned row must have its column at 
+	 * the minimum of c[i][j] - v[j].
+	 */
+	
+	private static void augment(DistanceMatrix c, double[] buffer, double[] v, int[] x, int[] y, int[] free, int numberOfFree) {
+		int n = c.rows();
+		
+		/*
+		 * The columns are kept in collist as:
+		 * [0, low) scanned, [low, up) at the minimum distance (to scan), [up, n) the others.
+		 */
+		
+		double[] d = new double[n];
+		int[] pred = new int[n];
+		int[] collist = new int[n];
+		for(int f = 0; f < numberOfFree; f ++) {
+			int freeRow = free[f];
+			double[] first = c.row(freeRow, buffer);
+			for(int j = 0; j < n; j ++) {
+				d[j] = first[j] - v[j];
+				pred[j] = freeRow;
+				collist[j] = j;
+			}
+			int low = 0;
+			int up = 0;
+			int last = -1;
+			int endOfPath = -1;
+			double min = 0.0;
+			do {
+				if(up == low) {
+					last = low - 1;
+					min = d[collist[up ++]];
+					for(int k = up; k < n; k ++) {
+						int j = collist[k];
+						double h = d[j];
+						if(h <= min) {
+							if(h < min) {
+								up = low;
+								min = h;
+							}
+							collist[k] = collist[up];
+							collist[up ++] = j;
+						}
+					}
+					for(int k = low; k < up; k ++)
+						if(y[collist[k]] < 0) {
+							endOfPath = collist[k];
+							break;
+						}
+				}
+				if(endOfPath < 0) {
+					int j1 = collist[low ++];
+					int i = y[j1];
+					double[] row = c.row(i, buffer);
+					double h = row[j1] - v[j1] - min;
+					for(int k = up; k < n; k ++) {
+						int j = collist[k];
+						double v2 = row[j] - v[j] - h;
+						if(v2 < d[j]) {
+							pred[j] = i;
+							if(v2 <= min) {
+								if(y[j] < 0) {
+									endOfPath = j;
+									break;
+								}
+								collist[k] = collist[up];
+								collist[up ++] = j;
+							}
+							d[j] = v2;
+						}
+					}
+				}
+			} while(endOfPath < 0);
+			
+			/*
+			 * The prices of the scanned columns are updated and the path is augmented.
+			 */
+			
+			for(int k = 0; k <= last; k ++) {
+				int j = collist[k];
+				v[j] += d[j] - min;
+			}
+			int i;
+			do {
+				i = pred[endOfPath];
+				y[endOfPath] = i;
+				int j = endOfPath;
+				endOfPath = x[i];
+				x[i] = j;
+			} while(i != freeRow);
+		}
+	}
+	
+	/**
+	 * The shortest augmenting paths on the edges of the graph.
+	 * 
+	 * @return for each row its column, null if the graph has no perfect matching.
+	 */
+	
+	public int[] getAssignment(CandidateEdges edges) {
+		int n = edges.size();
+		double[] u = new double[n];
+		double[] v = new double[n];
+		int[] x = new int[n];
+		int[] y = new int[n];
+		Arrays.fill(x, -1);
+		Arrays.fill(y, -1);
+		
+		/*
+		 * Column reduction and then each row takes its best column, if it is free.
+		 */
+		
+		Arrays.fill(v, Double.POSITIVE_INFINITY);
+		for(int e = 0; e < edges.numberOfEdges(); e ++)
+			v[edges.to[e]] = Math.min(v[edges.to[e]], edges.weight[e]);
+		for(int j = 0; j < n; j ++)
+			if(v[j] == Double.POSITIVE_INFINITY)
+				return null;
+		for(int i = 0; i < n; i ++) {
+			if(edges.first[i] == edges.first[i + 1])
+				return null;
+			u[i] = Double.POSITIVE_INFINITY;
+			int best = -1;
+			for(int e = edges.first[i]; e < edges.first[i + 1]; e ++) {
+				double r = edges.weight[e] - v[edges.to[e]];
+				if(r < u[i]) {
+					u[i] = r;
+					best = edges.to[e];
+				}
+			}
+			if(y[best] < 0) {
+				x[i] = best;
+				y[best] = i;
+			}
+		}
+		
+		double[] d = new double[n];
+		Arrays.fill(d, Double.POSITIVE_INFINITY);
+		int[] pred = new int[n];
+		boolean[] scanned = new boolean[n];
+		int[] touched = new int[n];
+		int[] scannedList = new int[n];
+		Heap heap = new Heap(d);
+		for(int f = 0; f < n; f ++) {
+			if(x[f] >= 0)
+				continue;
+			int numberOfTouched = 0;
+			int numberOfScanned = 0;
+			int endOfPath = -1;
+			double distance = 0.0;
+			int i = f;
+			double di = 0.0; // the distance of row i
+			while(true) {
+				for(int e = edges.first[i]; e < edges.first[i + 1]; e ++) {
+					int j = edges.to[e];
+					if(scanned[j])
+						continue;
+					double dj = di + edges.weight[e] - u[i] - v[j];
+					if(dj < d[j]) {
+						if(d[j] == Double.POSITIVE_INFINITY)
+							touched[numberOfTouched ++] = j;
+						d[j] = dj;
+						pred[j] = i;
+						heap.update(j);
+					}
+				}
+				if(heap.isEmpty())
+					break;
+				int j = heap.pop();
+				scanned[j] = true;
+				scannedList[numberOfScanned ++] = j;
+				if(y[j] < 0) {
+					endOfPath = j;
+					distance = d[j];
+					break;
+				}
+				i = y[j];
+				di = d[j];
+			}
+			
+			if(endOfPath >= 0) {
+				u[f] += distance;
+				for(int k = 0; k < numberOfScanned; k ++) {
+					int j = scannedList[k];
+					v[j] += d[j] - distance;
+					if(y[j] >= 0)
+						u[y[j]] += distance - d[j];
+				}
+				int j = endOfPath;
+				while(true) {
+					int p = pred[j];
+					int previous = x[p];
+					x[p] = j;
+					y[j] = p;
+					if(p == f)
+						break;
+					j = previous;
+				}
+			}
+			
+			for(int k = 0; k < numberOfTouched; k ++) {
+				d[touched[k]] = Double.POSITIVE_INFINITY;
+				scanned[touched[k]] = false;
+			}
+			heap.clear();
+			if(endOfPath < 0)
+				return null;
+		}
+		return x;
+	}
+	
+	/**
+	 * A binary min-heap of columns by distance (decrease key in O(log n)).
+	 */
+	
+	private static class Heap {
+		final double[] key;
+		final int[] heap;
+		final int[] position; // -1 if the column is not in the heap
+		int size;
+		
+		Heap(double[] key) {
+			this.key = key;
+			heap = new int[key.length];
+			position = new int[key.length];
+			Arrays.fill(position, -1);
+		}
+		
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		void clear() {
+			for(int k = 0; k < size; k ++)
+				position[heap[k]] = -1;
+			size = 0;
+		}
+		
+		/**
+		 * Inserts j or moves it up after its key has decreased.
+		 */
+		
+		void update(int j) {
+			int k = position[j];
+			if(k < 0) {
+				k = size ++;
+				heap[k] = j;
+				position[j] = k;
+			}
+			while(k > 0) {
+				int parent = (k - 1) / 2;
+				if(key[heap[parent]] <= key[j])
+					break;
+				heap[k] = heap[parent];
+				position[heap[k]] = k;
+				k = parent;
+			}
+			heap[k] = j;
+			position[j] = k;
+		}
+		
+		int pop() {
+			int top = heap[0];
+			position[top] = -1;
+			int j = heap[-- size];
+			if(size > 0) {
+				int k = 0;
+				while(true) {
+					int child = 2 * k + 1;
+					if(child >= size)
+						break;
+					if(child + 1 < size && key[heap[child + 1]] < key[heap[child]])
+						child ++;
+					if(key[heap[child]] >= key[j])
+						break;
+					heap[k] = heap[child];
+					position[heap[k]] = k;
+					k = child;
+				}
+				heap[k] = j;
+				position[j] = k;
+			}
+			return top;
+		}
+	}
+}
@@ -1,96 +1,424 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
-public class LKH_Manager {
+/**
+ * The bridge to the external LKH binary.
+ * 
+ * Every run works in its own temporary directory (deleted at the end), so any number of
+ * runs can go on in parallel, in the same JVM or on the same host. The process is killed if
+ * it does not finish within the timeout.
+ */
+
+public class LKH_Manager implements ATSP_Engine {
 	private static final String TYPE = "ATSP";
-	private static final String TOUR_FILE = "LKH\\TOUR_FILE";
-	private static final String PROBLEM_FILE = "LKH\\PROBLEM_FILE";
-	private static final String PARAMETER_FILE = "LKH\\PARAMETER_FILE";
-	private static final String LKH_BIN = "LKH\\LKH.exe";
-	private static final int RUNS = 3;
+	private static final String TOUR_FILE = "TOUR_FILE";
+	private static final String PROBLEM_FILE = "PROBLEM_FILE";
+	private static final String PARAMETER_FILE = "PARAMETER_FILE";
+	private static final String CANDIDATE_FILE = "CANDIDATE_FILE";
+	private static final String OUTPUT_FILE = "OUTPUT";
+	public static final String DEFAULT_LKH_BIN = "LKH" + File.separator + "LKH.exe";
+	public static final int DEFAULT_RUNS = 3;
+	public static final long GRACE_PERIOD = 5000; // ms given to LKH over its TIME_LIMIT (for the preprocessing)
 	private static final int PRECISION = (int)1E1;
 	
-	public static int[][] fix(double[][] distances) {
-		int[][] fixedDistances = new int[distances.length][distances.length];
-		for(int i = 0; i < distances.length; i ++)
-			for(int j = 0; j < distances.length; j ++)
-				fixedDistances[i][j] = (int)(distances[i][j] * PRECISION);
-		return fixedDistances;
+	/*
+	 * The weights are computed in long, so nothing can overflow, but they can not be written 
+	 * with 64 bits: LKH reads them into int and multiplies them by its own PRECISION (100 by 
+	 * default), and it sums them with its penalties, so they must stay well below 2^31 / 100. 
+	 * The weights written are never greater than MAX_WEIGHT: the INF distances become 
+	 * MAX_WEIGHT and the other ones are scaled by PRECISION, or less if the greatest of them 
+	 * would not fit (see scale). Then the rounding error of a weight is at most 
+	 * maxDistance / MAX_WEIGHT, about a millionth of the longest edge.
+	 */
+	
+	public static final long MAX_WEIGHT = 1L << 20;
+	
+	String binary;
+	int runs;
+	long timeout; // ms, 0 for no timeout
+	File temporaryDirectory; // where the directories of the runs are created (null for the default one)
+	
+	public LKH_Manager() {
+		this(DEFAULT_LKH_BIN, DEFAULT_RUNS, 0);
+	}
+	
+	/**
+	 * @param binary the path of the LKH executable. A relative path is resolved now (against 
+	 * the working directory), because LKH runs in the directory of each run.
+	 * @param runs
+	 * @param timeout the maximum time (milliseconds) of a run, after which the process is killed. 0 for no timeout.
+	 */
+	
+	public LKH_Manager(String binary, int runs, long timeout) {
+		this.binary = new File(binary).exists() ? new File(binary).getAbsolutePath() : binary; // else a command on the PATH
+		this.runs = runs;
+		this.timeout = timeout;
+	}
+	
+	public LKH_Manager setTemporaryDirectory(File temporaryDirectory) {
+		this.temporaryDirectory = temporaryDirectory;
+		return this;
+	}
+	
+	/**
+	 * The factor for the weights: PRECISION, unless the greatest (not INF) distance 
+	 * would be greater than MAX_WEIGHT / 2.
+	 * 
+	 * @param maxDistance
+	 * @return the factor.
+	 */
+	
+	public static double scale(double maxDistance) {
+		if(maxDistance * PRECISION <= MAX_WEIGHT / 2)
+			return PRECISION;
+		return (MAX_WEIGHT / 2) / maxDistance;
+	}
+	
+	public static long fix(double distance, double scale) {
+		if(distance >= ATSP_Engine.INF)
+			return MAX_WEIGHT;
+		return Math.max(0L, Math.min(MAX_WEIGHT, Math.round(distance * scale)));
+	}
+	
+	private static double maxDistance(DistanceMatrix distances) {
+		double max = 0.0;
+		double[] buffer = new double[distances.columns()];
+		for(int i = 0; i < distances.rows(); i ++)
+			for(double d : distances.row(i, buffer))
+				if(d < ATSP_Engine.INF)
+					max = Math.max(max, d);
+		return max;
 	}
 	
-	public static void writePARAMETER_FILE() throws IOException {
-		PrintWriter out = new PrintWriter(new FileWriter(new File(PARAMETER_FILE)));
+	/**
+	 * @param directory the directory of the run.
+	 * @param timeLimit the maximum time (milliseconds) of the search of LKH. 0 for no limit.
+	 * @throws IOException
+	 */
+	
+	public void writePARAMETER_FILE(File directory, long timeLimit) throws IOException {
+		writePARAMETER_FILE(directory, timeLimit, 0);
+	}
+	
+	/**
+	 * @param directory the directory of the run.
+	 * @param timeLimit the maximum time (milliseconds) of the search of LKH. 0 for no limit.
+	 * @param maxCandidates the MAX_CANDIDATES of the CANDIDATE_FILE (see writeCANDIDATE_FILE), 0 if LKH computes them.
+	 * @throws IOException
+	 */
+	
+	public void writePARAMETER_FILE(File directory, long timeLimit, int maxCandidates) throws IOException {
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(directory, PARAMETER_FILE))));
 		
-		out.println("PROBLEM_FILE = " + PROBLEM_FILE);
-		out.println("TOUR_FILE = " + TOUR_FILE);
-		out.println("RUNS = " + RUNS);
+		out.println("PROBLEM_FILE = " + new File(directory, PROBLEM_FILE).getAbsolutePath());
+		out.println("TOUR_FILE = " + new File(directory, TOUR_FILE).getAbsolutePath());
+		out.println("RUNS = " + runs);
+		if(maxCandidates > 0) {
+			out.println("CANDIDATE_FILE = " + new File(directory, CANDIDATE_FILE).getAbsolutePath());
+			out.println("MAX_CANDIDATES = " + maxCandidates);
+		}
+		if(timeLimit > 0)
+			out.println("TIME_LIMIT = " + timeLimit / 1000.0); // seconds
 		
 		out.close();
 	}
 	
-	public static void writePROBLEM_FILE(double[][] distances) throws IOException {
-		PrintWriter out = new PrintWriter(new FileWriter(new File(PROBLEM_FILE)));
-		
-		out.println("NAME: " + TYPE + "_between_chains");
-		out.println("TYPE: " + TYPE);
-		out.println("DIMENSION: " + distances.length);
-		out.println("EDGE_WEIGHT_TYPE: EXPLICIT");
-		out.println("EDGE_WEIGHT_FORMAT: FULL_MATRIX");
-		out.println("EDGE_WEIGHT_SECTION");
+	/**
+	 * The matrix is written row by row while it is converted, without building the integral
+	 * copy of it.
+	 * 
+	 * @param directory the directory of the run.
+	 * @param distances
+	 * @throws IOException
+	 */
+	
+	public void writePROBLEM_FILE(File directory, double[][] distances) throws IOException {
+		writePROBLEM_FILE(directory, DistanceMatrix.of(distances));
+	}
+	
+	public void writePROBLEM_FILE(File directory, DistanceMatrix distances) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, PROBLEM_FILE)), 1 << 16);
+		try {
+			out.write("NAME: " + TYPE + "_between_chains\n");
+			out.write("TYPE: " + TYPE + "\n");
+			out.write("DIMENSION: " + distances.rows() + "\n");
+			out.write("EDGE_WEIGHT_TYPE: EXPLICIT\n");
+			out.write("EDGE_WEIGHT_FORMAT: FULL_MATRIX\n");
+			out.write("EDGE_WEIGHT_SECTION\n");
+			
+			/*
+			 * This LKH implementation wants integral values (if provided explicitly)
+			 */
+			
+			double scale = scale(maxDistance(distances));
+			double[] buffer = new double[distances.columns()];
+			for(int i = 0; i < distances.rows(); i ++) {
+				double[] row = distances.row(i, buffer);
+				for(int j = 0; j < distances.columns(); j ++) {
+					if(j > 0)
+						out.write(' ');
+					out.write(Long.toString(fix(row[j], scale)));
+				}
+				out.write('\n');
+			}
+			out.write("EOF\n");
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * The problem of a sparse graph is the full matrix (the missing edges are INF), read row 
+	 * by row from the edges: the n^2 matrix is never built, only written. The search of LKH 
+	 * is limited to the edges by the CANDIDATE_FILE (see writeCANDIDATE_FILE).
+	 * 
+	 * PAY ATTENTION: the PROBLEM_FILE still grows with n^2, because the LKH we ship reads the 
+	 * weights of an ATSP only as an EXPLICIT matrix (its EDGE_DATA_SECTION has no weights). 
+	 * So with this bridge the sparse graph saves the memory of the matrix and the ascent of 
+	 * LKH, not the size of the file nor the time to write it: only an engine which takes the 
+	 * CandidateEdges as they are (e.g. ATSP_LocalSearch through ATSP_Engine) works in n * k.
+	 * 
+	 * @param directory the directory of the run.
+	 * @param edges
+	 * @throws IOException
+	 */
+	
+	public void writePROBLEM_FILE(File directory, CandidateEdges edges) throws IOException {
+		writePROBLEM_FILE(directory, edges.asMatrix(ATSP_Engine.INF));
+	}
+	
+	/**
+	 * Writes the candidate edges as the candidate sets of LKH, so that its search moves along 
+	 * them only and it skips the computation of its own candidates (the ascent, O(n^2) per 
+	 * step).
+	 * 
+	 * LKH solves the ATSP on the symmetric problem of 2n nodes where the node i + n is the 
+	 * copy of the node i: the edge i -> j is the edge (i, j + n), and (i, i + n) is fixed. So the 
+	 * file has 2n nodes: the candidates of i are i + n and the j + n of the edges out of i, the 
+	 * candidates of j + n are j and the i of the edges into j. Each line is 
+	 * "id dad count (candidate alpha)*" (1-indexed, no dad): the alpha of a candidate is its 
+	 * weight, so the candidates are written from the nearest one.
+	 * 
+	 * @param directory the directory of the run.
+	 * @param edges
+	 * @return the greatest number of candidates of a node (the MAX_CANDIDATES of LKH).
+	 * @throws IOException
+	 */
+	
+	public int writeCANDIDATE_FILE(File directory, CandidateEdges edges) throws IOException {
+		int n = edges.size();
+		double max = 0.0;
+		for(double w : edges.weight)
+			if(w < ATSP_Engine.INF)
+				max = Math.max(max, w);
+		double scale = scale(max);
 		
 		/*
-		 * This LKH implementation wants integral values (if provided explicitly)
+		 * The edges into each node (compressed as the ones out of it).
 		 */
 		
-		int[][] fixedDistances = fix(distances);
-		for(int[] a : fixedDistances)
-			for(int integralDistance : a)
-				out.println(integralDistance);
+		int[] firstIn = new int[n + 1];
+		for(int e = 0; e < edges.numberOfEdges(); e ++)
+			firstIn[edges.to[e] + 1] ++;
+		for(int j = 0; j < n; j ++)
+			firstIn[j + 1] += firstIn[j];
+		int[] position = Arrays.copyOf(firstIn, n);
+		int[] in = new int[edges.numberOfEdges()];
+		for(int i = 0; i < n; i ++)
+			for(int e = edges.first[i]; e < edges.first[i + 1]; e ++)
+				in[position[edges.to[e]] ++] = e;
 		
-		out.close();
+		int maxCandidates = 1;
+		BufferedWriter out = new BufferedWriter(new FileWriter(new File(directory, CANDIDATE_FILE)), 1 << 16);
+		try {
+			out.write((2 * n) + "\n");
+			int[] node = new int[0];
+			long[] alpha = new long[0];
+			for(int v = 0; v < 2 * n; v ++) {
+				int count = 0;
+				int from = v < n ? edges.first[v] : firstIn[v - n];
+				int to = v < n ? edges.first[v + 1] : firstIn[v - n + 1];
+				if(node.length < to - from) {
+					node = new int[to - from];
+					alpha = new long[to - from];
+				}
+				for(int k = from; k < to; k ++) {
+					int e = v < n ? k : in[k];
+					int u = v < n ? edges.to[e] + n : origin(edges, e);
+					if(u == v - n || u == v + n)
+						continue;
+					long a = fix(edges.weight[e], scale);
+					
+					/*
+					 * Insertion sort by alpha (the lists are short).
+					 */
+					
+					int z = count ++;
+					while(z > 0 && alpha[z - 1] > a) {
+						node[z] = node[z - 1];
+						alpha[z] = alpha[z - 1];
+						z --;
+					}
+					node[z] = u;
+					alpha[z] = a;
+				}
+				maxCandidates = Math.max(maxCandidates, count + 1);
+				out.write((v + 1) + " 0 " + (count + 1) + " " + ((v < n ? v + n : v - n) + 1) + " 0");
+				for(int z = 0; z < count; z ++)
+					out.write(" " + (node[z] + 1) + " " + alpha[z]);
+				out.write('\n');
+			}
+			out.write("-1\n");
+			out.write("EOF\n");
+		} finally {
+			out.close();
+		}
+		return maxCandidates;
+	}
+	
+	/**
+	 * The origin of the edge e (binary search on first).
+	 */
+	
+	private static int origin(CandidateEdges edges, int e) {
+		int low = 0;
+		int high = edges.size() - 1;
+		while(low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if(edges.first[middle] <= e)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return low;
 	}
 	
-	public static void execute() throws IOException, InterruptedException {
-		ProcessBuilder pb = new ProcessBuilder(LKH_BIN, PARAMETER_FILE);
-		pb.inheritIO();
-		pb.start().waitFor();
+	/**
+	 * Runs LKH and waits for it (at most for the timeout). The output of LKH goes to a file
+	 * in the directory of the run.
+	 * 
+	 * @param directory the directory of the run.
+	 * @param timeout the maximum time (milliseconds), 0 for no timeout.
+	 * @throws IOException if LKH fails or it is killed.
+	 * @throws InterruptedException
+	 */
+	
+	public void execute(File directory, long timeout) throws IOException, InterruptedException {
+		ProcessBuilder pb = new ProcessBuilder(binary, new File(directory, PARAMETER_FILE).getAbsolutePath());
+		pb.directory(directory);
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(new File(directory, OUTPUT_FILE));
+		Process process = pb.start();
+		try {
+			if(timeout > 0) {
+				if(!process.waitFor(timeout, TimeUnit.MILLISECONDS))
+					throw new IOException("LKH did not finish in " + timeout + "ms");
+			} else
+				process.waitFor();
+		} finally {
+			if(process.isAlive())
+				process.destroyForcibly().waitFor();
+		}
+		if(process.exitValue() != 0)
+			throw new IOException("LKH exited with " + process.exitValue() + ": " + new String(Files.readAllBytes(new File(directory, OUTPUT_FILE).toPath())));
 	}
 	
-	public static ArrayList <Integer> readAnswer() throws IOException {
-		Scanner in = new Scanner(new FileReader(new File(TOUR_FILE)));
+	public ArrayList <Integer> readAnswer(File directory) throws IOException {
+		Scanner in = new Scanner(new BufferedReader(new FileReader(new File(directory, TOUR_FILE))));
 		ArrayList <Integer> permutation = new ArrayList <> ();
-		while(true) 
-			if(in.nextLine().equals("TOUR_SECTION"))
-				break;
-		while(true) {
-			int pi = Integer.parseInt(in.next());
-			if(pi == -1)
-				break;
+		try {
+			while(true)
+				if(in.nextLine().equals("TOUR_SECTION"))
+					break;
+			while(true) {
+				int pi = Integer.parseInt(in.next());
+				if(pi == -1)
+					break;
+				
+				/*
+				 * The answer is 1-indexed
+				 */
+				
+				permutation.add(pi - 1);
+			}
+		} finally {
 			
 			/*
-			 * The answer is 1-indexed
+			 * REMEMBER TO CLOSE IT!
 			 */
 			
-			permutation.add(pi - 1);
+			in.close();
 		}
-		
-		/*
-		 * REMEMBER TO CLOSE IT!
-		 */
-		
-		in.close();
 		return permutation;
 	}
 	
-	public static ArrayList <Integer> getPermutation(double[][] distances) throws IOException, InterruptedException {
-		writePARAMETER_FILE();
-		writePROBLEM_FILE(distances);
-		execute();
-		return readAnswer();
+	private File createDirectory() throws IOException {
+		if(temporaryDirectory == null)
+			return Files.createTempDirectory("lkh").toFile();
+		return Files.createTempDirectory(temporaryDirectory.toPath(), "lkh").toFile();
+	}
+	
+	/**
+	 * @param timeLimit the TIME_LIMIT of LKH (milliseconds). 0 for no limit.
+	 */
+	
+	public ArrayList <Integer> getPermutation(double[][] distances, long timeLimit) throws IOException, InterruptedException {
+		return getPermutation(DistanceMatrix.of(distances), timeLimit);
+	}
+	
+	@Override
+	public ArrayList <Integer> getPermutation(DistanceMatrix distances, long timeLimit) throws IOException, InterruptedException {
+		File directory = createDirectory();
+		try {
+			writePARAMETER_FILE(directory, timeLimit);
+			writePROBLEM_FILE(directory, distances);
+			execute(directory, effectiveTimeout(timeLimit));
+			return readAnswer(directory);
+		} finally {
+			delete(directory);
+		}
+	}
+	
+	@Override
+	public ArrayList <Integer> getPermutation(CandidateEdges edges, long timeLimit) throws IOException, InterruptedException {
+		File directory = createDirectory();
+		try {
+			writePARAMETER_FILE(directory, timeLimit, writeCANDIDATE_FILE(directory, edges));
+			writePROBLEM_FILE(directory, edges);
+			execute(directory, effectiveTimeout(timeLimit));
+			return readAnswer(directory);
+		} finally {
+			delete(directory);
+		}
+	}
+	
+	/**
+	 * With a TIME_LIMIT the process is not waited for much longer than that.
+	 */
+	
+	private long effectiveTimeout(long timeLimit) {
+		if(timeLimit <= 0 || timeLimit > Long.MAX_VALUE - GRACE_PERIOD)
+			return timeout;
+		if(timeout <= 0)
+			return timeLimit + GRACE_PERIOD;
+		return Math.min(timeout, timeLimit + GRACE_PERIOD);
+	}
+	
+	private static void delete(File directory) {
+		File[] files = directory.listFiles();
+		if(files != null)
+			for(File f : files)
+				f.delete();
+		directory.delete();
 	}
 }
@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the process handling of LKH_Manager with LKH/stub.sh in place of LKH (it writes the
+ * tour 1, 2, ..., DIMENSION, or hangs with RUNS = 0), so it needs a POSIX shell and it runs
+ * from the root of the project:
+ * - the binary given by a relative path is found, although LKH runs in the directory of the run;
+ * - the full matrix and the candidate edges both give the tour of the stub;
+ * - a run which does not finish in the timeout is killed and reported as an IOException;
+ * - parallel runs do not share files;
+ * - the directories of the runs are always deleted.
+ * 
+ * Exits with 1 if a check fails.
+ */
+
+public class LKH_ManagerChecker {
+	
+	static final String STUB = "LKH" + File.separator + "stub.sh";
+	
+	static int failures;
+	
+	public static void main(String[] args) throws Exception {
+		File temporaryDirectory = Files.createTempDirectory("lkh-check").toFile();
+		try {
+			LKH_Manager manager = new LKH_Manager(STUB, 1, 5000).setTemporaryDirectory(temporaryDirectory);
+			check("relative path, full matrix", identity(4).equals(manager.getPermutation(matrix(4), 0)));
+			CandidateEdges edges = new CandidateEdges(3, new int[] {0, 1, 2}, new int[] {1, 2, 0}, new double[] {1.0, 2.0, 3.0}, 3);
+			check("relative path, candidate edges", identity(3).equals(manager.getPermutation(edges, 0)));
+			
+			LKH_Manager hanging = new LKH_Manager(STUB, 0, 500).setTemporaryDirectory(temporaryDirectory);
+			long start = System.nanoTime();
+			boolean killed = false;
+			try {
+				hanging.getPermutation(matrix(4), 0);
+			} catch(IOException e) {
+				killed = true;
+			}
+			long elapsed = (System.nanoTime() - start) / 1000000L;
+			check("timeout (killed after " + elapsed + "ms)", killed && elapsed < 5000);
+			
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			try {
+				List <Future <Boolean>> runs = new ArrayList <> ();
+				for(int r = 0; r < 32; r ++) {
+					int n = 3 + r;
+					runs.add(executor.submit(() -> identity(n).equals(manager.getPermutation(matrix(n), 0))));
+				}
+				boolean all = true;
+				for(Future <Boolean> run : runs)
+					all &= run.get();
+				check("32 parallel runs", all);
+			} finally {
+				executor.shutdown();
+			}
+			
+			String[] left = temporaryDirectory.list();
+			check("directories of the runs deleted", left != null && left.length == 0);
+		} finally {
+			temporaryDirectory.delete();
+		}
+		
+		System.out.println(failures == 0 ? "OK" : "FAILED");
+		if(failures > 0)
+			System.exit(1);
+	}
+	
+	private static void check(String name, boolean ok) {
+		System.out.println(name + ": " + (ok ? "ok" : "FAILED"));
+		if(!ok)
+			failures ++;
+	}
+	
+	private static double[][] matrix(int n) {
+		double[][] d = new double[n][n];
+		for(int i = 0; i < n; i ++)
+			for(int j = 0; j < n; j ++)
+				d[i][j] = i == j ? 0.0 : 1.0 + (i * 7 + j * 3) % 10;
+		return d;
+	}
+	
+	private static ArrayList <Integer> identity(int n) {
+		ArrayList <Integer> permutation = new ArrayList <> ();
+		for(int i = 0; i < n; i ++)
+			permutation.add(i);
+		return permutation;
+	}
+}
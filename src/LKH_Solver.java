@@ -1,16 +1,61 @@
 import java.io.IOException;
 import java.util.ArrayList;
 
-public class LKH_Solver implements Solver {
+public class LKH_Solver implements AnytimeSolver {
 
 	Field field;
 	Truck truck;
 	ChainsBuilder chainsBuilder;
+	ATSP_Engine engine;
+	int candidates; // 0 for the full matrix
+	DistanceMatrix.Storage storage = DistanceMatrix.Storage.AUTO;
 	
 	public LKH_Solver(Field field, Truck truck, ChainsBuildersFactory factory) {
+		this(field, truck, factory, new LKH_Manager());
+	}
+	
+	/**
+	 * @param field
+	 * @param truck
+	 * @param factory
+	 * @param engine the solver of the ATSP between the chains (LKH by default).
+	 */
+	
+	public LKH_Solver(Field field, Truck truck, ChainsBuildersFactory factory, ATSP_Engine engine) {
 		this.field = field;
 		this.truck = truck;
 		this.chainsBuilder = factory.getChainsBuilder(field, truck);
+		this.engine = engine;
+	}
+	
+	/**
+	 * With k > 0 the engine gets only the edges from each chain to its k nearest chains of 
+	 * the other type (and from the k nearest ones to it), instead of the full matrix.
+	 * 
+	 * With LKH_Manager (the default engine) the problem file is still the full matrix, plus 
+	 * the candidate sets of LKH (see LKH_Manager.writePROBLEM_FILE): it does not get smaller. 
+	 * The weights are written as integers of at most LKH_Manager.MAX_WEIGHT (2^20), as with the 
+	 * full matrix: they are clamped, not scaled to 64 bits, because LKH reads them into int. 
+	 * So every weight is rounded to 0.1 or, when the longest edge is over MAX_WEIGHT / 20, 
+	 * by up to about 1e-6 of the longest edge (see LKH_Manager.scale).
+	 * 
+	 * @param k
+	 * @return this solver.
+	 */
+	
+	public LKH_Solver setCandidates(int k) {
+		this.candidates = k;
+		return this;
+	}
+	
+	/**
+	 * @param storage how the full matrix of distances is stored (see DistanceMatrix).
+	 * @return this solver.
+	 */
+	
+	public LKH_Solver setStorage(DistanceMatrix.Storage storage) {
+		this.storage = storage;
+		return this;
 	}
 	
 	/**
@@ -20,28 +65,78 @@ public class LKH_Solver implements Solver {
 	 * 
 	 * @param chains the nodes of the bipartite graph.
 	 * @param threshold is the position of the first chain which belongs to the second set.
-	 * @return the matrix of distances.
+	 * @return the matrix of distances (in storage).
 	 */
 	
-	private double[][] buildMatrixOfDistances(ArrayList <Truck> chains, int threshold) {
+	private DistanceMatrix buildMatrixOfDistances(ChainEndpoints chains, int threshold) {
 		/*
 		 * Bipartite graph
 		 */
 		
-		final double INF = 1E6;
-		double[][] matrix = new double[chains.size()][chains.size()];
-		for(int i = 0; i < threshold; i ++) 
-			for(int j = 0; j < chains.size(); j ++)
-				matrix[i][j] = j >= threshold ? chains.get(i).distance(chains.get(j).path) : INF;
-		for(int i = threshold; i < chains.size(); i ++) 
-			for(int j = 0; j < chains.size(); j ++)
-				matrix[i][j] = j < threshold ? chains.get(i).distance(chains.get(j).path) : INF;
-		return matrix;
+		final double INF = ATSP_Engine.INF;
+		int n = chains.size();
+		return DistanceMatrix.create(n, n, (int i, int j) -> (i < threshold) != (j < threshold) ? chains.distance(i, j) : INF, storage);
+	}
+	
+	/**
+	 * The sparse version of buildMatrixOfDistances: the edges from each chain to the k chains 
+	 * of the other type whose first coordinates are the nearest to its last coordinates, and 
+	 * the edges to each chain from the k chains whose last coordinates are the nearest to its 
+	 * first coordinates (see CandidateEdges.nearest).
+	 * 
+	 * @param chains
+	 * @param threshold is the position of the first chain which belongs to the second set.
+	 * @param k
+	 * @return the graph (O(n * k) edges).
+	 */
+	
+	private static CandidateEdges buildCandidateEdges(ArrayList <Truck> chains, int threshold, int k) {
+		ChainEndpoints peaks = new ChainEndpoints(chains.subList(0, threshold));
+		ChainEndpoints holes = new ChainEndpoints(chains.subList(threshold, chains.size()));
+		return CandidateEdges.alternating(CandidateEdges.nearest(peaks, holes, k, false), CandidateEdges.nearest(holes, peaks, k, false));
+	}
+	
+	/**
+	 * Asks the engine for the order of the chains (the full matrix or the candidate edges). 
+	 * The tour is rotated to start with a chain of peaks. If the tour on the candidate edges 
+	 * uses a missing edge the full matrix is used.
+	 * 
+	 * @throws IllegalStateException if the tour does not alternate peaks and holes.
+	 */
+	
+	private ArrayList <Integer> getOrder(ArrayList <Truck> chains, int threshold, long timeLimit) throws IOException, InterruptedException {
+		ChainEndpoints endpoints = new ChainEndpoints(chains);
+		if(candidates > 0) {
+			ArrayList <Integer> order = startFromAPeak(engine.getPermutation(buildCandidateEdges(chains, threshold, candidates), timeLimit), threshold);
+			if(order != null)
+				return order;
+		}
+		ArrayList <Integer> order = startFromAPeak(engine.getPermutation(buildMatrixOfDistances(endpoints, threshold), timeLimit), threshold);
+		if(order == null)
+			throw new IllegalStateException("the tour does not alternate peaks and holes");
+		return order;
 	}
 	
+	/**
+	 * @return the rotated tour or null if it does not alternate peaks and holes.
+	 */
+	
+	private static ArrayList <Integer> startFromAPeak(ArrayList <Integer> order, int threshold) {
+		int first = 0;
+		while(first < order.size() && order.get(first) >= threshold)
+			first ++;
+		ArrayList <Integer> rotated = new ArrayList <> (order.size());
+		for(int i = 0; i < order.size(); i ++) {
+			int pi = order.get((first + i) % order.size());
+			if((i % 2 == 0) != (pi < threshold))
+				return null;
+			rotated.add(pi);
+		}
+		return rotated;
+	}
 	
 	/**
-	 * Solves the problem by using LKH algorithm.
+	 * Solves the problem by using LKH algorithm (or the given engine).
 	 * 
 	 * @return the path.
 	 * @throws IOException
@@ -58,7 +153,7 @@ public class LKH_Solver implements Solver {
 				ArrayList <Truck> chains = new ArrayList <> ();
 				chains.addAll(chainsOfPeaks);
 				chains.addAll(chainsOfHoles);
-				for(int pi : LKH_Manager.getPermutation(buildMatrixOfDistances(chains, chainsOfPeaks.size())))
+				for(int pi : getOrder(chains, chainsOfPeaks.size(), 0))
 					truck.move(chains.get(pi).path);
 			}
 			truck.fixPath();
@@ -68,4 +163,58 @@ public class LKH_Solver implements Solver {
 		}
 		return null;
 	}
+	
+	/**
+	 * The chains are built as in solve(). Then the path which alternates the chains in the 
+	 * order they have been built (always valid) is published, and the engine improves it within 
+	 * the time left.
+	 * 
+	 * @return the path.
+	 */
+	
+	public Path solve(long budget, CancellationToken token, IncumbentListener listener) {
+		Budget b = new Budget(budget, token);
+		chainsBuilder.fixField();
+		ArrayList <Truck> chainsOfPeaks = chainsBuilder.getAllChainsOfPeaks();
+		ArrayList <Truck> chainsOfHoles = chainsBuilder.getAllChainsOfHoles();
+		assert(chainsOfPeaks.size() == chainsOfHoles.size());
+		
+		ArrayList <Truck> chains = new ArrayList <> ();
+		chains.addAll(chainsOfPeaks);
+		chains.addAll(chainsOfHoles);
+		ArrayList <Integer> alternated = new ArrayList <> ();
+		for(int i = 0; i < chainsOfPeaks.size(); i ++) {
+			alternated.add(i);
+			alternated.add(chainsOfPeaks.size() + i);
+		}
+		Path best = follow(chains, alternated);
+		if(listener != null)
+			listener.improved(best, best.length());
+		if(chains.isEmpty() || b.isOver())
+			return best;
+		
+		try {
+			Path path = follow(chains, getOrder(chains, chainsOfPeaks.size(), Math.max(1, b.remaining())));
+			if(path.length() < best.length()) {
+				best = path;
+				if(listener != null)
+					listener.improved(best, best.length());
+			}
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+		return best;
+	}
+	
+	/**
+	 * The path of the truck if it follows the chains in the given order.
+	 */
+	
+	private Path follow(ArrayList <Truck> chains, ArrayList <Integer> order) {
+		Truck t = truck.clone();
+		for(int pi : order)
+			t.move(chains.get(pi).path);
+		t.fixPath();
+		return t.path;
+	}
 }
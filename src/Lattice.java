@@ -0,0 +1,211 @@
+import java.util.Arrays;
+
+/**
+ * The lattice on which the cells of a field lie: the spacing between two consecutive cells
+ * of the same row (deltaX) and of the same column (deltaY).
+ * 
+ * It is built in O(n log n) by sorting the cells. The lattice is regular if every cell is near
+ * (LATTICE_TOLERANCE * delta) to a different position (minX + column * deltaX, minY + row * deltaY)
+ * and the grid is not too sparse, so that the cells can be stored in a dense array.
+ */
+
+public class Lattice {
+	
+	public double deltaX, deltaY;
+	public double minX, minY;
+	public int rows, columns;
+	public boolean regular;
+	public static final double LATTICE_TOLERANCE = 0.25;
+	
+	public Lattice(double deltaX, double deltaY, double minX, double minY, int rows, int columns, boolean regular) {
+		this.deltaX = deltaX;
+		this.deltaY = deltaY;
+		this.minX = minX;
+		this.minY = minY;
+		this.rows = rows;
+		this.columns = columns;
+		this.regular = regular;
+	}
+	
+	/**
+	 * Finds the lattice of the given cells.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return the lattice.
+	 */
+	
+	public static Lattice detect(double[] x, double[] y) {
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for(int i = 0; i < x.length; i ++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		
+		double deltaX = minimumSpacing(y, x);
+		double deltaY = minimumSpacing(x, y);
+		
+		int columns = toLattice(maxX, minX, deltaX) + 1;
+		int rows = toLattice(maxY, minY, deltaY) + 1;
+		
+		Lattice lattice = new Lattice(deltaX, deltaY, minX, minY, rows, columns, false);
+		
+		/*
+		 * A very sparse lattice would waste too much memory.
+		 */
+		
+		if((long)rows * columns > 4L * x.length + 16)
+			return lattice;
+		
+		long[] positions = new long[x.length];
+		for(int i = 0; i < x.length; i ++) {
+			int column = lattice.column(x[i]);
+			int row = lattice.row(y[i]);
+			if(!onLattice(x[i], minX, deltaX, column) || !onLattice(y[i], minY, deltaY, row))
+				return lattice;
+			positions[i] = (long)row * columns + column;
+		}
+		Arrays.sort(positions);
+		for(int i = 1; i < positions.length; i ++)
+			if(positions[i] == positions[i - 1])
+				return lattice;
+		
+		lattice.regular = true;
+		return lattice;
+	}
+	
+	/**
+	 * Checks in O(n) that this lattice can be the one of the given cells (for a lattice which 
+	 * was not detected, e.g. read from a file): the minimum and the extent of the cells must 
+	 * be the ones of the lattice and, if it is regular, every cell must be near to a different 
+	 * position. The spacing itself is not checked again (it is the O(n log n) part of detect).
+	 * 
+	 * @param x
+	 * @param y
+	 * @return true if the lattice is consistent with the cells.
+	 */
+	
+	public boolean fits(double[] x, double[] y) {
+		if(!(deltaX > 0.0) || !(deltaY > 0.0) || rows < 1 || columns < 1)
+			return false;
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for(int i = 0; i < x.length; i ++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		if(x.length > 0 && (minX != this.minX || minY != this.minY || column(maxX) + 1 != columns || row(maxY) + 1 != rows))
+			return false;
+		if(!regular)
+			return true;
+		if((long)rows * columns > 4L * x.length + 16)
+			return false;
+		boolean[] taken = new boolean[rows * columns];
+		for(int i = 0; i < x.length; i ++) {
+			int column = column(x[i]);
+			int row = row(y[i]);
+			if(!contains(row, column) || !onLattice(x[i], minX, deltaX, column) || !onLattice(y[i], minY, deltaY, row) || taken[row * columns + column])
+				return false;
+			taken[row * columns + column] = true;
+		}
+		return true;
+	}
+	
+	/**
+	 * The minimum distance between two (different) cells on the same line, where a line is
+	 * made by the cells with the same "line" coordinate.
+	 * The cells are sorted by line and then, line by line, by "along": two cells at minimum
+	 * distance are consecutive.
+	 * 
+	 * @param line
+	 * @param along
+	 * @return the minimum distance (Double.MAX_VALUE if every line has just one cell).
+	 */
+	
+	private static double minimumSpacing(double[] line, double[] along) {
+		int[] order = new int[line.length];
+		for(int i = 0; i < order.length; i ++)
+			order[i] = i;
+		sort(order, line, 0, order.length);
+		
+		double spacing = Double.MAX_VALUE;
+		int first = 0;
+		while(first < order.length) {
+			int last = first + 1;
+			while(last < order.length && Math.abs(line[order[last]] - line[order[last - 1]]) < Vector2D.MAX_ERROR_COOR)
+				last ++;
+			sort(order, along, first, last);
+			for(int k = first + 1; k < last; k ++) {
+				int i = order[k - 1];
+				int j = order[k];
+				if(Math.abs(along[i] - along[j]) < Vector2D.MAX_ERROR_COOR)
+					continue; // the same cell
+				double dl = line[i] - line[j];
+				double da = along[i] - along[j];
+				spacing = Math.min(spacing, Math.sqrt(dl * dl + da * da));
+			}
+			first = last;
+		}
+		return spacing;
+	}
+	
+	/**
+	 * Sorts order[from, to) by key (merge sort, so no boxing is needed).
+	 * 
+	 * @param order
+	 * @param key
+	 * @param from
+	 * @param to
+	 */
+	
+	static void sort(int[] order, double[] key, int from, int to) {
+		int[] tmp = new int[to - from];
+		for(int width = 1; width < to - from; width *= 2) {
+			for(int lo = from; lo < to - width; lo += 2 * width) {
+				int mid = lo + width;
+				int hi = Math.min(lo + 2 * width, to);
+				int i = lo, j = mid, k = 0;
+				while(i < mid && j < hi)
+					tmp[k ++] = key[order[j]] < key[order[i]] ? order[j ++] : order[i ++];
+				while(i < mid)
+					tmp[k ++] = order[i ++];
+				while(j < hi)
+					tmp[k ++] = order[j ++];
+				System.arraycopy(tmp, 0, order, lo, k);
+			}
+		}
+	}
+	
+	private static int toLattice(double v, double min, double delta) {
+		if(delta == Double.MAX_VALUE)
+			return 0;
+		return (int)Math.round((v - min) / delta);
+	}
+	
+	private static boolean onLattice(double v, double min, double delta, int k) {
+		if(delta == Double.MAX_VALUE)
+			return Math.abs(v - min) < Vector2D.MAX_ERROR_COOR;
+		return Math.abs(v - (min + k * delta)) <= LATTICE_TOLERANCE * delta;
+	}
+	
+	public int column(double x) {
+		return toLattice(x, minX, deltaX);
+	}
+	
+	public int row(double y) {
+		return toLattice(y, minY, deltaY);
+	}
+	
+	public boolean contains(int row, int column) {
+		return 0 <= row && row < rows && 0 <= column && column < columns;
+	}
+}
@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A DistanceMatrix whose rows are computed the first time they are read (and then kept): the 
+ * rows which are never read cost nothing. It can be read by more threads: a row computed by 
+ * two of them at the same time is the same and only one is kept.
+ * 
+ * It pays when the engine reads only some rows; reading it by columns computes every row.
+ */
+
+public class LazyDistanceMatrix implements DistanceMatrix {
+	
+	final int rows, columns;
+	final Entries entries;
+	final AtomicReferenceArray <double[]> matrix;
+	
+	public LazyDistanceMatrix(int rows, int columns, Entries entries) {
+		this.rows = rows;
+		this.columns = columns;
+		this.entries = entries;
+		matrix = new AtomicReferenceArray <> (rows);
+	}
+	
+	public int rows() {
+		return rows;
+	}
+	
+	public int columns() {
+		return columns;
+	}
+	
+	private double[] row(int i) {
+		double[] row = matrix.get(i);
+		if(row != null)
+			return row;
+		row = new double[columns];
+		for(int j = 0; j < columns; j ++)
+			row[j] = entries.get(i, j);
+		return matrix.compareAndSet(i, null, row) ? row : matrix.get(i);
+	}
+	
+	public double get(int i, int j) {
+		return row(i)[j];
+	}
+	
+	public double[] row(int i, double[] buffer) {
+		return row(i);
+	}
+	
+	/**
+	 * The number of rows computed so far.
+	 */
+	
+	public int computedRows() {
+		int computed = 0;
+		for(int i = 0; i < rows; i ++)
+			if(matrix.get(i) != null)
+				computed ++;
+		return computed;
+	}
+}
@@ -11,8 +11,8 @@ public class Main {
 	
 	public static void print(Path p, String filePath) throws IOException {
 		PrintWriter out = new PrintWriter(new FileWriter(new File(filePath)));
-		for(Stopover s : p.stopovers)
-			out.println(s.coordinates.x + " " + s.coordinates.y + " " + s.quantityToBringIn);
+		for(int i = 0; i < p.size(); i ++)
+			out.println(p.getX(i) + " " + p.getY(i) + " " + p.getQuantityToBringIn(i));
 		out.close();
 	}
 	
@@ -71,8 +71,8 @@ public class Main {
 				truck.path = path;
 				assert(!clone.isSmooth());
 				
-				for(Stopover s : path.stopovers) 
-					assert(0 <= s.quantityToBringIn && s.quantityToBringIn <= capacity);
+				for(int i = 0; i < path.size(); i ++) 
+					assert(0 <= path.getQuantityToBringIn(i) && path.getQuantityToBringIn(i) <= capacity);
 				
 				for(int i = 0; i < path.size() - 1; i ++)
 					clone.update(truck.getMovement(i));
@@ -138,8 +138,8 @@ public class Main {
 				truck.path = path;
 				assert(!clone.isSmooth());
 				
-				for(Stopover s : path.stopovers) 
-					assert(0 <= s.quantityToBringIn && s.quantityToBringIn <= capacity);
+				for(int i = 0; i < path.size(); i ++) 
+					assert(0 <= path.getQuantityToBringIn(i) && path.getQuantityToBringIn(i) <= capacity);
 				
 				for(int i = 0; i < path.size() - 1; i ++)
 					clone.update(truck.getMovement(i));
@@ -0,0 +1,62 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * A DistanceMatrix out of the heap, in direct buffers: a big matrix does not need a big heap 
+ * (and the garbage collector does not scan it). A buffer holds at most 2 GB, so the rows are 
+ * split into blocks of rows, one buffer each. The memory is released when the matrix is 
+ * collected.
+ * 
+ * PAY ATTENTION: the direct memory is limited by -XX:MaxDirectMemorySize, which is as big as 
+ * the maximum heap by default.
+ */
+
+public class OffHeapDistanceMatrix implements DistanceMatrix {
+	
+	final int rows, columns;
+	final int rowsPerBuffer;
+	final DoubleBuffer[] buffers;
+	
+	/**
+	 * Fills the matrix in parallel (by blocks of rows).
+	 */
+	
+	public OffHeapDistanceMatrix(int rows, int columns, Entries entries) {
+		this.rows = rows;
+		this.columns = columns;
+		rowsPerBuffer = Math.max(1, Integer.MAX_VALUE / Double.BYTES / Math.max(1, columns));
+		buffers = new DoubleBuffer[(rows + rowsPerBuffer - 1) / rowsPerBuffer];
+		for(int b = 0; b < buffers.length; b ++) {
+			int size = Math.min(rowsPerBuffer, rows - b * rowsPerBuffer) * columns;
+			buffers[b] = ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		}
+		DistanceMatrix.fillByBlocks(rows, (int from, int to) -> {
+			for(int i = from; i < to; i ++) {
+				DoubleBuffer buffer = buffers[i / rowsPerBuffer];
+				int offset = (i % rowsPerBuffer) * columns;
+				for(int j = 0; j < columns; j ++)
+					buffer.put(offset + j, entries.get(i, j));
+			}
+		});
+	}
+	
+	public int rows() {
+		return rows;
+	}
+	
+	public int columns() {
+		return columns;
+	}
+	
+	public double get(int i, int j) {
+		return buffers[i / rowsPerBuffer].get((i % rowsPerBuffer) * columns + j);
+	}
+	
+	public double[] row(int i, double[] buffer) {
+		DoubleBuffer view = buffers[i / rowsPerBuffer].duplicate();
+		view.position((i % rowsPerBuffer) * columns);
+		view.get(buffer, 0, columns);
+		return buffer;
+	}
+}
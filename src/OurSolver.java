@@ -1,17 +1,230 @@
 import java.awt.Color;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.function.DoubleSupplier;
 
 public class OurSolver implements Solver {
 	
 	Field field;
 	Truck truck;
 	ChainsBuilder chainsBuilder;
+	AssignmentEngine assignment;
+	int candidates; // 0 for the full matrix
+	WarmStart warmStartPH, warmStartHP; // null for none
+	ChainSequencer sequencer = new ChainSequencer();
+	DistanceMatrix.Storage storage = DistanceMatrix.Storage.AUTO;
+	DoubleSupplier cutoff; // null for none
+	double prunedBound = Double.NaN; // the bound which was over the cutoff, NaN if not pruned
+	
+	/*
+	 * If keepChains, solve() keeps the truck after fixField (start) and the chains in the 
+	 * order it follows them (chains): pathOf(start, chains) gives the same path again.
+	 */
+	
+	boolean keepChains = false;
+	Truck start;
+	ArrayList <Truck> chains;
+	static final double EPS = 1E-6; // relative: the path merges the points closer than MAX_ERROR_COOR
 	
 	public OurSolver(Field field, Truck truck, ChainsBuildersFactory factory) {
+		this(field, truck, factory, new HungarianEngine());
+	}
+	
+	/**
+	 * @param field
+	 * @param truck
+	 * @param factory
+	 * @param assignment the solver of the assignments between the chains (HungarianAlgorithm by default).
+	 */
+	
+	public OurSolver(Field field, Truck truck, ChainsBuildersFactory factory, AssignmentEngine assignment) {
 		this.field = field;
 		this.truck = truck;
 		this.chainsBuilder = factory.getChainsBuilder(field, truck);
+		this.assignment = assignment;
+	}
+	
+	/**
+	 * With k > 0 the assignment engine gets only the edges from each chain to the k nearest 
+	 * chains of the other type (and from the k nearest ones to it), instead of the full matrix. 
+	 * It is much faster but the assignment is the best one on those edges only.
+	 * 
+	 * @param k
+	 * @return this solver.
+	 */
+	
+	public OurSolver setCandidates(int k) {
+		this.candidates = k;
+		return this;
+	}
+	
+	/**
+	 * The assignments start from the ones of the previous solver which used the same warm 
+	 * starts (if the engine supports it, they are ignored otherwise). The chains are identified by the cells where they 
+	 * end (the rows) and start (the columns), so the warm starts need field.size() keys.
+	 * 
+	 * @param warmStartPH for the assignment of the chains of peaks to the chains of holes.
+	 * @param warmStartHP for the assignment of the chains of holes to the chains of peaks.
+	 * @return this solver.
+	 */
+	
+	public OurSolver setWarmStarts(WarmStart warmStartPH, WarmStart warmStartHP) {
+		this.warmStartPH = warmStartPH;
+		this.warmStartHP = warmStartHP;
+		return this;
+	}
+	
+	/**
+	 * @param sequencer the local search on the sequence of the chains.
+	 * @return this solver.
+	 */
+	
+	public OurSolver setSequencer(ChainSequencer sequencer) {
+		this.sequencer = sequencer;
+		return this;
+	}
+	
+	/**
+	 * @param storage how the full matrices of distances are stored (see DistanceMatrix). AUTO 
+	 * goes off heap only if the assignment engine reads the rows (LAPJV, AuctionAlgorithm).
+	 * @return this solver.
+	 */
+	
+	public OurSolver setStorage(DistanceMatrix.Storage storage) {
+		this.storage = storage;
+		return this;
+	}
+	
+	/**
+	 * With a cutoff solve() gives up (and returns null) as soon as a lower bound of the length 
+	 * of its path is greater than the cutoff. The cutoff is read at every check, so it can be 
+	 * the length of the best path found meanwhile by other solvers.
+	 * 
+	 * The bound is the length of the path built so far plus an estimate of the links between 
+	 * the chains which is never greater than the real one (see linksLowerBound); fixPath only 
+	 * adds vertices between the ones of the path, so it can only make it longer.
+	 * 
+	 * @param cutoff
+	 * @return this solver.
+	 */
+	
+	public OurSolver setCutoff(DoubleSupplier cutoff) {
+		this.cutoff = cutoff;
+		return this;
+	}
+	
+	/**
+	 * @param keepChains if solve() keeps the chains of its path (see getStart and getChains).
+	 * @return this solver.
+	 */
+	
+	public OurSolver setKeepChains(boolean keepChains) {
+		this.keepChains = keepChains;
+		return this;
+	}
+	
+	/**
+	 * @return the truck after fixField in the last solve() (null if the chains have not been 
+	 * kept or if there are no chains).
+	 */
+	
+	public Truck getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return the chains of the last solve(), in their order.
+	 */
+	
+	public ArrayList <Truck> getChains() {
+		return chains;
+	}
+	
+	/**
+	 * The path which follows chains (in their order) from start.
+	 * 
+	 * @param start the truck after fixField (not modified).
+	 * @param chains
+	 * @return the path, fixed.
+	 */
+	
+	public static Path pathOf(Truck start, ArrayList <Truck> chains) {
+		Truck truck = start.clone();
+		for(Truck chain : chains)
+			truck.move(chain.path);
+		truck.fixPath();
+		return truck.path;
+	}
+	
+	private boolean pruned(double bound) {
+		if(cutoff == null || bound <= cutoff.getAsDouble() * (1.0 + EPS))
+			return false;
+		prunedBound = bound;
+		return true;
+	}
+	
+	/**
+	 * @return the lower bound of the length of the path at which the last solve() has been 
+	 * pruned (greater than the cutoff at that time), NaN if it has not been pruned.
+	 */
+	
+	public double getPrunedBound() {
+		return prunedBound;
+	}
+	
+	/**
+	 * The same chains of chainsBuilder.getAllChainsOfPeaks() (or of holes), checking the bound 
+	 * after every chain.
+	 * 
+	 * @param peaks
+	 * @param bound the bound before the chains.
+	 * @return the chains, null if the bound gets greater than the cutoff.
+	 */
+	
+	private ArrayList <Truck> getAllChains(boolean peaks, double bound) {
+		Truck lastTruck = truck.clone();
+		ArrayList <Truck> chains = new ArrayList <> ();
+		while(peaks ? field.numberOfPeaks() > 0 : field.numberOfHoles() > 0) {
+			lastTruck = peaks ? chainsBuilder.getChainOfPeaks(lastTruck, truck.capacity) : chainsBuilder.getChainOfHoles(lastTruck, truck.capacity);
+			chains.add(lastTruck);
+			bound += lastTruck.path.length();
+			if(pruned(bound))
+				return null;
+		}
+		return chains;
+	}
+	
+	private static double length(ArrayList <Truck> chains) {
+		double length = 0.0;
+		for(Truck chain : chains)
+			length += chain.path.length();
+		return length;
+	}
+	
+	/**
+	 * A lower bound of the links between the chains in any sequence which starts from (x, y): 
+	 * the first chain is a peak, every chain of peaks is followed by a chain of holes and 
+	 * every chain of holes but the last one by a chain of peaks. So every link costs at least 
+	 * the distance to the nearest chain of the other type.
+	 */
+	
+	private static double linksLowerBound(double x, double y, ChainEndpoints peaks, ChainEndpoints holes) {
+		SpatialIndex firstsOfPeaks = new SpatialIndex(peaks.firstX, peaks.firstY);
+		SpatialIndex firstsOfHoles = new SpatialIndex(holes.firstX, holes.firstY);
+		for(int i = 0; i < peaks.size(); i ++)
+			firstsOfPeaks.add(i);
+		for(int i = 0; i < holes.size(); i ++)
+			firstsOfHoles.add(i);
+		double bound = peaks.distance(x, y, firstsOfPeaks.nearest(x, y));
+		for(int i = 0; i < peaks.size(); i ++)
+			bound += peaks.distance(i, holes, firstsOfHoles.nearest(peaks.lastX[i], peaks.lastY[i]));
+		double max = 0.0;
+		for(int i = 0; i < holes.size(); i ++) {
+			double d = holes.distance(i, peaks, firstsOfPeaks.nearest(holes.lastX[i], holes.lastY[i]));
+			bound += d;
+			max = Math.max(max, d);
+		}
+		return bound - max;
 	}
 	
 	/**
@@ -20,35 +233,61 @@ public class OurSolver implements Solver {
 	 * 
 	 * @param chainsOfPeaks
 	 * @param chainsOfHoles
-	 * @return the matrix of distances.
+	 * @return the matrix of distances (in storage).
 	 */
 	
-	private double[][] buildMatrixOfDistances(ArrayList <Truck> chainsOfPeaks, ArrayList <Truck> chainsOfHoles) {
-		double[][] matrix = new double[chainsOfPeaks.size()][chainsOfHoles.size()];
-		for(int i = 0; i < chainsOfPeaks.size(); i ++) 
-			for(int j = 0; j < chainsOfHoles.size(); j ++)
-				matrix[i][j] = chainsOfPeaks.get(i).distance(chainsOfHoles.get(j).path);
-		return matrix;
+	private DistanceMatrix buildMatrixOfDistances(ChainEndpoints chainsOfPeaks, ChainEndpoints chainsOfHoles) {
+		return DistanceMatrix.create(chainsOfPeaks.size(), chainsOfHoles.size(), (int i, int j) -> chainsOfPeaks.distance(i, chainsOfHoles, j), storage.forEngine(assignment.readsRows()));
 	}
 	
 	/**
-	 * Finds the nearest chain to from (according to its first coordinates). 
+	 * The assignment of the chains of from to the chains of to. With the candidate edges the 
+	 * assignment is the best one on those edges only; if the engine used a missing edge the 
+	 * full matrix is used. The warm start (if any) is used only with the full matrix.
+	 */
+	
+	private int[] assign(ChainEndpoints from, ChainEndpoints to, WarmStart warmStart) {
+		if(candidates > 0) {
+			CandidateEdges edges = CandidateEdges.nearest(from, to, candidates, true);
+			int[] result = assignment.getAssignment(edges);
+			boolean valid = result != null;
+			for(int i = 0; valid && i < result.length; i ++)
+				valid = result[i] >= 0 && edges.find(i, result[i]) >= 0;
+			if(valid)
+				return result;
+		}
+		if(warmStart == null || !assignment.supportsWarmStart())
+			return assignment.getAssignment(buildMatrixOfDistances(from, to));
+		int[] rowKeys = new int[from.size()];
+		int[] columnKeys = new int[to.size()];
+		for(int i = 0; i < from.size(); i ++)
+			rowKeys[i] = field.indexOf(from.lastX[i], from.lastY[i]);
+		for(int j = 0; j < to.size(); j ++)
+			columnKeys[j] = field.indexOf(to.firstX[j], to.firstY[j]);
+		return assignment.getAssignment(buildMatrixOfDistances(from, to), rowKeys, columnKeys, warmStart);
+	}
+	
+	/**
+	 * Finds the nearest chain to (x, y) (according to its first coordinates). 
 	 * The chains marked as "done" are discarded.
 	 * 
-	 * @param from
+	 * @param x
+	 * @param y
 	 * @param chains
 	 * @param done
 	 * @return the index of the nearest.
 	 */
 	
-	private int getTheIndexOfTheNearest(Truck lastTruck, ArrayList <Truck> chains, boolean[] done) {
+	private int getTheIndexOfTheNearest(double x, double y, ChainEndpoints chains, boolean[] done) {
 		int nearest = -1;
+		double nearestDistance = 0.0;
 		for(int i = 0; i < chains.size(); i ++)
 			if(!done[i]) {
-				if(nearest == -1)
-					nearest = i;
-				else if(lastTruck.distance(chains.get(i).path) < lastTruck.distance(chains.get(nearest).path))
+				double d = chains.distance(x, y, i);
+				if(nearest == -1 || d < nearestDistance) {
 					nearest = i;
+					nearestDistance = d;
+				}
 			}
 		return nearest;
 	}
@@ -56,25 +295,37 @@ public class OurSolver implements Solver {
 	/**
 	 * Solves the problem by using our heuristic.
 	 * 
-	 * @return the path.
+	 * @return the path, null if it has been pruned by the cutoff (if any).
 	 */
 	
 	public Path solve() {
+		start = null;
+		chains = null;
+		prunedBound = Double.NaN;
 		chainsBuilder.fixField();
+		double bound = truck.path.length();
+		if(pruned(bound))
+			return null;
 		//try {
 		//	new PathPrinter("").print(field, truck.path, 2.1, 2.1, 200.0, 200.0, "FixField.png", Color.black);
 		//} catch (IOException e1) {
 			// TODO Auto-generated catch block
 		//	e1.printStackTrace();
 		//}
-		ArrayList <Truck> chainsOfPeaks = chainsBuilder.getAllChainsOfPeaks();
+		ArrayList <Truck> chainsOfPeaks = cutoff == null ? chainsBuilder.getAllChainsOfPeaks() : getAllChains(true, bound);
+		if(chainsOfPeaks == null)
+			return null;
+		bound += length(chainsOfPeaks);
 		//try {
 		//	new PathPrinter("").printChains(field, chainsOfPeaks, 2.1, 2.1, 200.0, 200.0, "chainsOfPeaks.png", Color.BLACK, Color.GREEN);
 		//} catch (IOException e) {
 			// TODO Auto-generated catch block
 		//	e.printStackTrace();
 		//}
-		ArrayList <Truck> chainsOfHoles = chainsBuilder.getAllChainsOfHoles();
+		ArrayList <Truck> chainsOfHoles = cutoff == null ? chainsBuilder.getAllChainsOfHoles() : getAllChains(false, bound);
+		if(chainsOfHoles == null)
+			return null;
+		bound += length(chainsOfHoles);
 		//try {
 		//	new PathPrinter("").printChains(field, chainsOfHoles, 2.1, 2.1, 200.0, 200.0, "chainsOfHoles.png", Color.BLACK, Color.GREEN);
 		//} catch (IOException e) {
@@ -83,25 +334,36 @@ public class OurSolver implements Solver {
 		//}
 		assert(chainsOfPeaks.size() == chainsOfHoles.size());
 		if(chainsOfPeaks.size() > 0) {
-			int[] assignmentPH = new HungarianAlgorithm(buildMatrixOfDistances(chainsOfPeaks, chainsOfHoles)).execute();
-			int[] assignmentHP = new HungarianAlgorithm(buildMatrixOfDistances(chainsOfHoles, chainsOfPeaks)).execute();
+			ChainEndpoints peaks = new ChainEndpoints(chainsOfPeaks);
+			ChainEndpoints holes = new ChainEndpoints(chainsOfHoles);
+			if(cutoff != null && pruned(bound + linksLowerBound(truck.path.getLastX(), truck.path.getLastY(), peaks, holes)))
+				return null;
+			int[] assignmentPH = assign(peaks, holes, warmStartPH);
+			int[] assignmentHP = assign(holes, peaks, warmStartHP);
 			boolean[] doneP = new boolean[chainsOfPeaks.size()];
 			
 			ArrayList <Truck> chains = new ArrayList <> ();
 			
-			int next = getTheIndexOfTheNearest(truck, chainsOfPeaks, doneP);
+			int next = getTheIndexOfTheNearest(truck.path.getLastX(), truck.path.getLastY(), peaks, doneP);
 			while(next != -1) {
+				int hole = assignmentPH[next];
 				doneP[next] = true;
 				chains.add(chainsOfPeaks.get(next));
-				chains.add(chainsOfHoles.get(assignmentPH[next]));
-				next = doneP[assignmentHP[assignmentPH[next]]] ? getTheIndexOfTheNearest(chainsOfHoles.get(assignmentPH[next]), chainsOfPeaks, doneP) :
-						assignmentHP[assignmentPH[next]];
+				chains.add(chainsOfHoles.get(hole));
+				next = doneP[assignmentHP[hole]] ? getTheIndexOfTheNearest(holes.lastX[hole], holes.lastY[hole], peaks, doneP) :
+						assignmentHP[hole];
 			}
 
-			truck.improveSequenceOfChains(chains);
+			truck.improveSequenceOfChains(chains, sequencer);
+			if(keepChains) {
+				start = truck.clone();
+				this.chains = chains;
+			}
 			for(Truck chain : chains)
 				truck.move(chain.path);
 		}
+		if(pruned(truck.path.length()))
+			return null;
 		truck.fixPath();
 		return truck.path;
 	}
@@ -1,4 +1,5 @@
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 class Stopover {
@@ -24,51 +25,113 @@ class Stopover {
 
 public class Path {
 	
-	ArrayList <Stopover> stopovers;
+	/*
+	 * The stopovers are stored in primitive (growable) arrays: the i-th stopover is 
+	 * (x[i], y[i]) with quantities[i] to bring in. No object is allocated for each stopover.
+	 */
+	
+	double[] x, y;
+	long[] quantities;
+	int size;
 	
 	public Path() {
-		stopovers = new ArrayList <> ();
+		this(16);
+	}
+	
+	private Path(int capacity) {
+		capacity = Math.max(capacity, 1);
+		x = new double[capacity];
+		y = new double[capacity];
+		quantities = new long[capacity];
 	}
 	
 	public Path(Coordinates...coordinates) {
-		this();
+		this(coordinates.length);
 		for(Coordinates c : coordinates)
-			stopovers.add(new Stopover(c, 0));
+			addStopover(c.x, c.y, 0);
 	}
 	
 	public Path(List<Stopover> stopovers) {
-		this.stopovers = new ArrayList <> ();
-		this.stopovers.addAll(stopovers);
+		this(stopovers.size());
+		for(Stopover s : stopovers)
+			append(s.coordinates.x, s.coordinates.y, s.quantityToBringIn);
 	}
 	
 	public Path clone() {
-		return new Path(stopovers);
+		return subPath(0, size);
 	}
 	
 	public int size() {
-		return stopovers.size();
+		return size;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if(capacity <= x.length)
+			return;
+		int newCapacity = Math.max(capacity, 2 * x.length);
+		x = Arrays.copyOf(x, newCapacity);
+		y = Arrays.copyOf(y, newCapacity);
+		quantities = Arrays.copyOf(quantities, newCapacity);
+	}
+	
+	/**
+	 * Adds a stopover at the end without any check.
+	 */
+	
+	private void append(double sx, double sy, long q) {
+		ensureCapacity(size + 1);
+		x[size] = sx;
+		y[size] = sy;
+		quantities[size] = q;
+		size ++;
 	}
 	
 	public Stopover removeStopover(int i) {
-		return stopovers.remove(i);
+		Stopover s = getStopover(i);
+		System.arraycopy(x, i + 1, x, i, size - i - 1);
+		System.arraycopy(y, i + 1, y, i, size - i - 1);
+		System.arraycopy(quantities, i + 1, quantities, i, size - i - 1);
+		size --;
+		return s;
+	}
+	
+	private boolean same(int i, double sx, double sy) {
+		return Math.abs(x[i] - sx) < Vector2D.MAX_ERROR_COOR && Math.abs(y[i] - sy) < Vector2D.MAX_ERROR_COOR;
 	}
 	
-	private void addStopover(int i, Stopover s) {
+	/**
+	 * Inserts the stopover in position i, unless it is equal to the previous or to the 
+	 * next one.
+	 * 
+	 * @param i
+	 * @param sx
+	 * @param sy
+	 * @param q
+	 */
+	
+	public void addStopover(int i, double sx, double sy, long q) {
 		if(i > 0)
-			if(getCoordinates(i - 1).equals(s.coordinates))
+			if(same(i - 1, sx, sy))
 				return;
 		if(i < size())
-			if(s.coordinates.equals(getCoordinates(i)))
+			if(same(i, sx, sy))
 				return;
-		stopovers.add(i, s);
+		ensureCapacity(size + 1);
+		System.arraycopy(x, i, x, i + 1, size - i);
+		System.arraycopy(y, i, y, i + 1, size - i);
+		System.arraycopy(quantities, i, quantities, i + 1, size - i);
+		x[i] = sx;
+		y[i] = sy;
+		quantities[i] = q;
+		size ++;
 	}
 	
-	private void addStopover(Stopover s) {
-		addStopover(size(), s);
+	public void addStopover(double sx, double sy, long q) {
+		addStopover(size(), sx, sy, q);
 	}
 	
 	public void addStopover(int i, Coordinates c, long q) {
-		addStopover(i, new Stopover(c, q));
+		addStopover(i, c.x, c.y, q);
 	}
 	
 	public void addStopover(Coordinates c, long q) {
@@ -76,13 +139,51 @@ public class Path {
 	}
 	
 	public Path append(Path p) {
-		for(Stopover s : p.stopovers)
-			addStopover(s);
+		ensureCapacity(size + p.size);
+		for(int i = 0; i < p.size; i ++)
+			addStopover(p.x[i], p.y[i], p.quantities[i]);
 		return this;
 	}
 	
+	public double getX(int i) {
+		return x[i];
+	}
+	
+	public double getY(int i) {
+		return y[i];
+	}
+	
+	public double getFirstX() {
+		return x[0];
+	}
+	
+	public double getFirstY() {
+		return y[0];
+	}
+	
+	public double getLastX() {
+		return x[size - 1];
+	}
+	
+	public double getLastY() {
+		return y[size - 1];
+	}
+	
+	public void setCoordinates(int i, double sx, double sy) {
+		x[i] = sx;
+		y[i] = sy;
+	}
+	
+	public void setCoordinates(int i, Coordinates c) {
+		setCoordinates(i, c.x, c.y);
+	}
+	
+	/**
+	 * Returns a new object: changing it does not change the path (see setCoordinates).
+	 */
+	
 	public Coordinates getCoordinates(int i) {
-		return stopovers.get(i).coordinates;
+		return new Coordinates(x[i], y[i]);
 	}
 	
 	public Coordinates getLastCoordinates() {
@@ -94,18 +195,59 @@ public class Path {
 	}
 	
 	public long getQuantityToBringIn(int i) {
-		return stopovers.get(i).quantityToBringIn;
+		return quantities[i];
+	}
+	
+	public Stopover getStopover(int i) {
+		return new Stopover(getCoordinates(i), quantities[i]);
+	}
+	
+	/**
+	 * A view of the path as a list of Stopover (for compatibility). Every get builds a new 
+	 * Stopover, while set writes it back into the path.
+	 * 
+	 * @return the view.
+	 */
+	
+	public List<Stopover> getStopovers() {
+		return new AbstractList<Stopover>() {
+			
+			@Override
+			public Stopover get(int i) {
+				if(i < 0 || i >= size)
+					throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+				return getStopover(i);
+			}
+			
+			@Override
+			public Stopover set(int i, Stopover s) {
+				Stopover old = get(i);
+				setCoordinates(i, s.coordinates);
+				quantities[i] = s.quantityToBringIn;
+				return old;
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+		};
 	}
 	
 	public double length() {
 		double length = 0.0;
 		for(int i = 1; i < size(); i ++)
-			length += getCoordinates(i - 1).distance(getCoordinates(i));
+			length += Geometry.distance(x[i - 1], y[i - 1], x[i], y[i]);
 		return length;
 	}
 	
 	public Path subPath(int firstToInclude, int firstToExclude) {
-		return new Path(stopovers.subList(firstToInclude, firstToExclude));
+		Path p = new Path(firstToExclude - firstToInclude);
+		System.arraycopy(x, firstToInclude, p.x, 0, firstToExclude - firstToInclude);
+		System.arraycopy(y, firstToInclude, p.y, 0, firstToExclude - firstToInclude);
+		System.arraycopy(quantities, firstToInclude, p.quantities, 0, firstToExclude - firstToInclude);
+		p.size = firstToExclude - firstToInclude;
+		return p;
 	}
 	
 	public Path prefix(int firstToExclude) {
@@ -119,8 +261,8 @@ public class Path {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for(Stopover s : stopovers)
-			sb.append(s.toString() + " -> ");
+		for(int i = 0; i < size; i ++)
+			sb.append(getStopover(i).toString() + " -> ");
 		return sb.substring(0, sb.length() - 4).toString();
 	}
 }
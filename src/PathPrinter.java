@@ -41,7 +41,7 @@ public class PathPrinter extends JFrame {
 			g2D.setPaint(Color.RED);
 			
 			ArrayList <Coordinates> coordinates = new ArrayList <> ();
-			coordinates.addAll(field.cells.keySet());
+			coordinates.addAll(field.getAllCoordinates());
 			
 			coordinates.sort((Coordinates c1, Coordinates c2) -> {
 				if(c1.x < c2.x)
@@ -95,7 +95,7 @@ public class PathPrinter extends JFrame {
 			g2D.setPaint(Color.BLUE);
 			
 			ArrayList <Coordinates> coordinates = new ArrayList <> ();
-			for(Coordinates c : field.cells.keySet()) {
+			for(Coordinates c : field.getAllCoordinates()) {
 				Coordinates c1 = new Coordinates(c.x - field.deltaX / 2, c.y - field.deltaY / 2);
 				if(!coordinates.contains(c1))
 					coordinates.add(c1);
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Path relinking between two solutions (chains in their order, see ElitePool): it walks from 
+ * the order of the initial solution towards the one of the guiding solution and keeps the 
+ * best order met on the way.
+ * 
+ * Every solution has its own chains (every GRASP iteration builds them again), so the order 
+ * of the guide is projected on the chains of the initial solution: every chain gets the 
+ * position in the guide of the chain of the same type whose beginning is the nearest to its 
+ * own, and the target order sorts the peaks (the even positions) and the holes (the odd ones) 
+ * by that position. Every step swaps two chains of the same type so that one more position 
+ * gets its chain of the target, choosing the swap which costs least: the cost of a swap is 
+ * computed in O(1) from the links around the two positions (as in ChainSequencer). The best 
+ * order met (but the initial one, which is already a local optimum) is improved by the 
+ * sequencer at the end.
+ */
+
+public class PathRelinking {
+	
+	public static final double EPS = 1E-9;
+	
+	ChainSequencer sequencer;
+	
+	public PathRelinking() {
+		this(new ChainSequencer());
+	}
+	
+	/**
+	 * @param sequencer the local search on the best order met.
+	 */
+	
+	public PathRelinking(ChainSequencer sequencer) {
+		this.sequencer = sequencer;
+	}
+	
+	/**
+	 * @param initial the chains of the initial solution in their order (not modified).
+	 * @param guide the chains of the guiding solution in their order.
+	 * @param startX the position of the truck before the chains of initial.
+	 * @param startY
+	 * @return the chains of initial in the best order found, null if it does not link them 
+	 * better than the order of initial.
+	 */
+	
+	public ArrayList <Truck> relink(ArrayList <Truck> initial, ArrayList <Truck> guide, double startX, double startY) {
+		int n = initial.size();
+		if(n < 3 || guide.isEmpty())
+			return null;
+		Walk walk = new Walk(new ChainEndpoints(initial), startX, startY, target(initial, guide));
+		double initialCost = walk.cost;
+		int[] best = walk.run();
+		if(best == null)
+			return null;
+		ArrayList <Truck> chains = new ArrayList <> (n);
+		for(int c : best)
+			chains.add(initial.get(c));
+		sequencer.improve(chains, startX, startY);
+		return cost(new ChainEndpoints(chains), startX, startY) < initialCost - EPS ? chains : null;
+	}
+	
+	/**
+	 * The cost of the links of chains in their order, from (x, y).
+	 */
+	
+	static double cost(ChainEndpoints chains, double x, double y) {
+		double cost = chains.distance(x, y, 0);
+		for(int p = 1; p < chains.size(); p ++)
+			cost += chains.distance(p - 1, p);
+		return cost;
+	}
+	
+	/**
+	 * The order of guide projected on the chains of initial (target[p] is the chain of initial 
+	 * at the position p).
+	 */
+	
+	private static int[] target(ArrayList <Truck> initial, ArrayList <Truck> guide) {
+		int n = initial.size();
+		ChainEndpoints g = new ChainEndpoints(guide);
+		SpatialIndex[] firsts = {new SpatialIndex(g.firstX, g.firstY), new SpatialIndex(g.firstX, g.firstY)};
+		for(int c = 0; c < g.size(); c ++)
+			firsts[c % 2].add(c);
+		ChainEndpoints e = new ChainEndpoints(initial);
+		int[] target = new int[n];
+		for(int type = 0; type < 2; type ++) {
+			
+			/*
+			 * (position in the guide, chain) sorted, in a long.
+			 */
+			
+			long[] keys = new long[(n - type + 1) / 2];
+			for(int c = type; c < n; c += 2) {
+				int nearest = firsts[type].isEmpty() ? c : firsts[type].nearest(e.firstX[c], e.firstY[c]);
+				keys[c / 2] = (long) nearest * n + c;
+			}
+			Arrays.sort(keys);
+			for(int k = 0; k < keys.length; k ++)
+				target[type + 2 * k] = (int) (keys[k] % n);
+		}
+		return target;
+	}
+	
+	private static class Walk {
+		final ChainEndpoints e;
+		final double startX, startY;
+		final int n;
+		final int[] sequence, position, target;
+		double cost;
+		
+		Walk(ChainEndpoints e, double startX, double startY, int[] target) {
+			this.e = e;
+			this.startX = startX;
+			this.startY = startY;
+			this.target = target;
+			n = e.size();
+			sequence = new int[n];
+			position = new int[n];
+			for(int p = 0; p < n; p ++) {
+				sequence[p] = p;
+				position[p] = p;
+			}
+			cost = cost(e, startX, startY);
+		}
+		
+		private double in(int p) {
+			return p == 0 ? e.distance(startX, startY, sequence[0]) : e.distance(sequence[p - 1], sequence[p]);
+		}
+		
+		private double out(int p) {
+			return p == n - 1 ? 0.0 : e.distance(sequence[p], sequence[p + 1]);
+		}
+		
+		/**
+		 * The change of the cost if the chains at p and q (same type, so not adjacent) are 
+		 * swapped.
+		 */
+		
+		private double swapCost(int p, int q) {
+			if(p > q) {
+				int t = p;
+				p = q;
+				q = t;
+			}
+			int cp = sequence[p];
+			int cq = sequence[q];
+			double before = in(p) + out(p) + in(q) + out(q);
+			double after = (p == 0 ? e.distance(startX, startY, cq) : e.distance(sequence[p - 1], cq)) + e.distance(cq, sequence[p + 1]) + 
+					e.distance(sequence[q - 1], cp) + (q == n - 1 ? 0.0 : e.distance(cp, sequence[q + 1]));
+			return after - before;
+		}
+		
+		/**
+		 * Walks to the target.
+		 * 
+		 * @return the best order met but the initial one (the chains at each position), null 
+		 * if the initial one is the target.
+		 */
+		
+		int[] run() {
+			double bestCost = Double.POSITIVE_INFINITY;
+			int[] best = null;
+			while(true) {
+				int bestP = -1;
+				double bestDelta = Double.POSITIVE_INFINITY;
+				for(int p = 0; p < n; p ++)
+					if(sequence[p] != target[p]) {
+						double delta = swapCost(p, position[target[p]]);
+						if(delta < bestDelta) {
+							bestDelta = delta;
+							bestP = p;
+						}
+					}
+				if(bestP == -1)
+					break;
+				int q = position[target[bestP]];
+				int c = sequence[bestP];
+				sequence[bestP] = target[bestP];
+				sequence[q] = c;
+				position[target[bestP]] = bestP;
+				position[c] = q;
+				cost += bestDelta;
+				if(cost < bestCost - EPS) {
+					bestCost = cost;
+					best = sequence.clone();
+				}
+			}
+			return best;
+		}
+	}
+}
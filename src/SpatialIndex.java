@@ -0,0 +1,383 @@
+import java.util.Arrays;
+
+/**
+ * A dynamic set of cells of a field which answers nearest / most distant queries
+ * without scanning all the cells.
+ * 
+ * The bounding box of the field is split into a grid of square buckets and every bucket
+ * keeps a (doubly linked) list of the cells of the set which fall inside it. So add
+ * and remove are O(1), while a query visits the buckets ring by ring around the
+ * query point and stops as soon as no farther ring can contain a better cell.
+ * 
+ * Ties are always broken by the smallest index, so the answers depend only on the
+ * content of the set (not on the order of the operations).
+ */
+
+public class SpatialIndex {
+	
+	final double[] x, y; // shared with the field
+	double minX, minY, maxX, maxY;
+	double side;
+	int rows, columns;
+	int[] head; // first cell of each bucket
+	int[] rowCount, columnCount;
+	int[] rowFirst, rowLast; // first and last non empty bucket of each row (-1 if the row is empty)
+	int[] next, prev; // for each cell
+	int[] bucketOf; // -1 if the cell does not belong to the set
+	int size;
+	
+	public SpatialIndex(double[] x, double[] y) {
+		this.x = x;
+		this.y = y;
+		next = new int[x.length];
+		prev = new int[x.length];
+		bucketOf = new int[x.length];
+		Arrays.fill(bucketOf, -1);
+		
+		minX = Double.MAX_VALUE;
+		minY = Double.MAX_VALUE;
+		maxX = -Double.MAX_VALUE;
+		maxY = -Double.MAX_VALUE;
+		for(int i = 0; i < x.length; i ++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxX = Math.max(maxX, x[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		buildBuckets(x.length);
+	}
+	
+	private SpatialIndex(SpatialIndex s) {
+		x = s.x;
+		y = s.y;
+		minX = s.minX;
+		minY = s.minY;
+		maxX = s.maxX;
+		maxY = s.maxY;
+		side = s.side;
+		rows = s.rows;
+		columns = s.columns;
+		head = s.head.clone();
+		rowCount = s.rowCount.clone();
+		columnCount = s.columnCount.clone();
+		rowFirst = s.rowFirst.clone();
+		rowLast = s.rowLast.clone();
+		next = s.next.clone();
+		prev = s.prev.clone();
+		bucketOf = s.bucketOf.clone();
+		size = s.size;
+	}
+	
+	public SpatialIndex clone() {
+		return new SpatialIndex(this);
+	}
+	
+	/**
+	 * About two cells for bucket.
+	 * 
+	 * @param expectedSize
+	 */
+	
+	private void buildBuckets(int expectedSize) {
+		int buckets = Math.max(1, expectedSize / 2);
+		double width = Math.max(0.0, maxX - minX);
+		double height = Math.max(0.0, maxY - minY);
+		
+		/*
+		 * The second term avoids too many buckets when the field is very thin.
+		 */
+		
+		side = Math.max(Math.sqrt(width * height / buckets), Math.max(width, height) / buckets);
+		if(side == 0.0)
+			side = 1.0;
+		columns = (int)(width / side) + 1;
+		rows = (int)(height / side) + 1;
+		head = new int[rows * columns];
+		Arrays.fill(head, -1);
+		rowCount = new int[rows];
+		columnCount = new int[columns];
+		rowFirst = new int[rows];
+		rowLast = new int[rows];
+		Arrays.fill(rowFirst, -1);
+		Arrays.fill(rowLast, -1);
+	}
+	
+	/**
+	 * When the set becomes much smaller than the number of buckets the queries
+	 * would visit too many empty buckets, so we build a coarser grid. When it becomes much 
+	 * bigger (cells added again, as in Field.rollback) the buckets would be too full, so we
+	 * build a finer grid.
+	 */
+	
+	private void rebuild() {
+		int[] cells = new int[size];
+		int k = 0;
+		for(int b = 0; b < head.length; b ++)
+			for(int i = head[b]; i != -1; i = next[i])
+				cells[k ++] = i;
+		buildBuckets(size);
+		size = 0;
+		for(int i : cells) {
+			bucketOf[i] = -1;
+			add(i);
+		}
+	}
+	
+	private int column(double v) {
+		return (int)Math.max(0, Math.min(columns - 1, (long)Math.floor((v - minX) / side)));
+	}
+	
+	private int row(double v) {
+		return (int)Math.max(0, Math.min(rows - 1, (long)Math.floor((v - minY) / side)));
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public boolean contains(int i) {
+		return bucketOf[i] != -1;
+	}
+	
+	public void add(int i) {
+		if(contains(i))
+			return;
+		int r = row(y[i]);
+		int c = column(x[i]);
+		int b = r * columns + c;
+		bucketOf[i] = b;
+		prev[i] = -1;
+		next[i] = head[b];
+		if(head[b] != -1)
+			prev[head[b]] = i;
+		head[b] = i;
+		if(rowCount[r] ++ == 0) {
+			rowFirst[r] = c;
+			rowLast[r] = c;
+		} else {
+			rowFirst[r] = Math.min(rowFirst[r], c);
+			rowLast[r] = Math.max(rowLast[r], c);
+		}
+		columnCount[c] ++;
+		size ++;
+		if(size > 8 * head.length)
+			rebuild();
+	}
+	
+	public void remove(int i) {
+		if(!contains(i))
+			return;
+		int b = bucketOf[i];
+		if(prev[i] != -1)
+			next[prev[i]] = next[i];
+		else
+			head[b] = next[i];
+		if(next[i] != -1)
+			prev[next[i]] = prev[i];
+		bucketOf[i] = -1;
+		int r = b / columns;
+		int c = b % columns;
+		if(-- rowCount[r] == 0) {
+			rowFirst[r] = -1;
+			rowLast[r] = -1;
+		} else if(head[b] == -1) {
+			while(head[r * columns + rowFirst[r]] == -1)
+				rowFirst[r] ++;
+			while(head[r * columns + rowLast[r]] == -1)
+				rowLast[r] --;
+		}
+		columnCount[c] --;
+		size --;
+		if(size < head.length / 8 && head.length > 16)
+			rebuild();
+	}
+	
+	/**
+	 * The state of a search: the k best cells found so far, sorted (by distance and 
+	 * then by index). Keeping it outside the index makes the queries read-only.
+	 */
+	
+	private static class Query {
+		final double qx, qy;
+		final boolean nearest;
+		final int[] exclude;
+		final int[] best;
+		final double[] bestDistance;
+		int found;
+		
+		Query(double qx, double qy, boolean nearest, int k, int[] exclude) {
+			this.qx = qx;
+			this.qy = qy;
+			this.nearest = nearest;
+			this.exclude = exclude;
+			best = new int[k];
+			Arrays.fill(best, -1);
+			bestDistance = new double[k];
+		}
+		
+		boolean full() {
+			return found == best.length;
+		}
+		
+		double worst() {
+			return bestDistance[found - 1];
+		}
+		
+		private boolean better(double d1, int i1, double d2, int i2) {
+			if(d1 != d2)
+				return nearest ? d1 < d2 : d1 > d2;
+			return i1 < i2;
+		}
+		
+		void offer(int i, double d) {
+			if(full() && !better(d, i, worst(), best[found - 1]))
+				return;
+			for(int e : exclude)
+				if(e == i)
+					return;
+			int j = full() ? found - 1 : found ++;
+			for(; j > 0 && better(d, i, bestDistance[j - 1], best[j - 1]); j --) {
+				best[j] = best[j - 1];
+				bestDistance[j] = bestDistance[j - 1];
+			}
+			best[j] = i;
+			bestDistance[j] = d;
+		}
+	}
+	
+	private void visit(int b, Query q) {
+		for(int i = head[b]; i != -1; i = next[i])
+			q.offer(i, Geometry.distance(q.qx, q.qy, x[i], y[i]));
+	}
+	
+	/**
+	 * Visits every bucket at (Chebyshev) distance exactly ring from (r, c).
+	 * Rows and columns without cells are skipped entirely.
+	 */
+	
+	private void visitRing(int r, int c, int ring, Query q) {
+		if(ring == 0) {
+			visit(r * columns + c, q);
+			return;
+		}
+		int fromColumn = Math.max(0, c - ring);
+		int toColumn = Math.min(columns - 1, c + ring);
+		int fromRow = Math.max(0, r - ring + 1);
+		int toRow = Math.min(rows - 1, r + ring - 1);
+		for(int rr = r - ring; rr <= r + ring; rr += 2 * ring) {
+			if(rr < 0 || rr >= rows || rowCount[rr] == 0)
+				continue;
+			for(int cc = fromColumn; cc <= toColumn; cc ++)
+				visit(rr * columns + cc, q);
+		}
+		for(int cc = c - ring; cc <= c + ring; cc += 2 * ring) {
+			if(cc < 0 || cc >= columns || columnCount[cc] == 0)
+				continue;
+			for(int rr = fromRow; rr <= toRow; rr ++)
+				visit(rr * columns + cc, q);
+		}
+	}
+	
+	private int maxRing(int r, int c) {
+		return Math.max(Math.max(r, rows - 1 - r), Math.max(c, columns - 1 - c));
+	}
+	
+	/**
+	 * Returns the k nearest cells of the set to (qx, qy), excluding the given ones.
+	 * 
+	 * @param qx
+	 * @param qy
+	 * @param k
+	 * @param exclude the cells to ignore (-1 is ignored).
+	 * @return the indexes of the cells sorted by distance. If the set has less than k 
+	 * cells (not excluded) the last positions are -1.
+	 */
+	
+	public int[] nearest(double qx, double qy, int k, int...exclude) {
+		Query q = new Query(qx, qy, true, k, exclude);
+		if(isEmpty() || k == 0)
+			return q.best;
+		int r = row(qy);
+		int c = column(qx);
+		int maxRing = maxRing(r, c);
+		for(int ring = 0; ring <= maxRing; ring ++) {
+			
+			/*
+			 * Every cell in this ring (and in the next ones) is at least (ring - 1) * side far
+			 * from the projection of (qx, qy) on the grid (so from (qx, qy) too).
+			 */
+			
+			if(q.full() && (ring - 1) * side > q.worst())
+				break;
+			visitRing(r, c, ring, q);
+		}
+		return q.best;
+	}
+	
+	/**
+	 * Returns the nearest cell of the set to (qx, qy).
+	 * 
+	 * @param qx
+	 * @param qy
+	 * @return the index of the cell or -1 if the set is empty.
+	 */
+	
+	public int nearest(double qx, double qy) {
+		return nearest(qx, qy, 1)[0];
+	}
+	
+	/**
+	 * An upper bound of the distance between (qx, qy) and the cells in the bucket (r, c).
+	 */
+	
+	private double maxDistance(int r, int c, double qx, double qy) {
+		double dx = Math.max(Math.abs(qx - (minX + c * side)), Math.abs(qx - (minX + (c + 1) * side)));
+		double dy = Math.max(Math.abs(qy - (minY + r * side)), Math.abs(qy - (minY + (r + 1) * side)));
+		return Geometry.norm(dx, dy);
+	}
+	
+	/**
+	 * Returns the most distant cell of the set from (qx, qy).
+	 * 
+	 * The rows are visited from the most distant (along y) to the nearest one and we stop when 
+	 * even the widest cell of the remaining rows can not beat the best one. Inside a row the 
+	 * buckets are visited from the two ends inwards, while they can contain a better cell.
+	 * 
+	 * @param qx
+	 * @param qy
+	 * @return the index of the cell or -1 if the set is empty.
+	 */
+	
+	public int mostDistant(double qx, double qy) {
+		Query q = new Query(qx, qy, false, 1, new int[0]);
+		if(isEmpty())
+			return -1;
+		double dxMax = Math.max(Math.abs(qx - minX), Math.abs(qx - (minX + columns * side)));
+		int bottom = 0;
+		int top = rows - 1;
+		while(bottom <= top) {
+			double dyBottom = Math.max(Math.abs(qy - (minY + bottom * side)), Math.abs(qy - (minY + (bottom + 1) * side)));
+			double dyTop = Math.max(Math.abs(qy - (minY + top * side)), Math.abs(qy - (minY + (top + 1) * side)));
+			int r = dyBottom >= dyTop ? bottom ++ : top --;
+			double dy = Math.max(dyBottom, dyTop);
+			if(q.full() && Geometry.norm(dxMax, dy) < q.worst())
+				break;
+			if(rowCount[r] == 0)
+				continue;
+			int left = rowFirst[r];
+			int right = rowLast[r];
+			while(left <= right) {
+				double dLeft = maxDistance(r, left, qx, qy);
+				double dRight = maxDistance(r, right, qx, qy);
+				if(q.full() && Math.max(dLeft, dRight) < q.worst())
+					break;
+				visit(r * columns + (dLeft >= dRight ? left ++ : right --), q);
+			}
+		}
+		return q.best[0];
+	}
+}
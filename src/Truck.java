@@ -67,7 +67,7 @@ public class Truck {
 	 */
 	
 	public static double getAngle(Coordinates c1, Coordinates c2, Coordinates c3) {
-		return c2.subtract(c1).getAngle(c3.subtract(c2));
+		return Geometry.angle(c1.x, c1.y, c2.x, c2.y, c3.x, c3.y);
 	}
 	
 	/**
@@ -92,30 +92,35 @@ public class Truck {
 	 */
 	
 	public boolean movementOk(Coordinates c1, Coordinates c2) {
-		return c1.distance(c2) >= S - ACCEPTED_ERROR;
+		return movementOk(c1.x, c1.y, c2.x, c2.y);
+	}
+	
+	public boolean movementOk(double x1, double y1, double x2, double y2) {
+		return Geometry.distance(x1, y1, x2, y2) >= S - ACCEPTED_ERROR;
 	}
 	
 	/**
-	 * Given the position i of the coordinates for which the angle abc is not valid, 
-	 * fix the path and returns the new path ab...c
+	 * The last two stopovers of out (a and b) and c make a not valid angle: appends to out 
+	 * the vertices of a regular polygon which goes from b to c (c is not appended).
 	 * 
-	 * @param absAlpha
-	 * @param i
-	 * @return the path a -> c
+	 * @param out
+	 * @param absAlpha the angle abc.
+	 * @param cx
+	 * @param cy
+	 * @param q the quantity to bring in of c (the same for every vertex).
 	 */
 	
-	public Path insertRegularPolygon(double absAlpha, int i) {
-		Stopover sa = path.stopovers.get(i - 2);
-		Stopover sb = path.stopovers.get(i - 1);
-		Stopover sc = path.stopovers.get(i);
+	private void appendRegularPolygon(Path out, double absAlpha, double cx, double cy, long q) {
+		int i = out.size(); // the position of the first vertex
+		double ax = out.getX(i - 2);
+		double ay = out.getY(i - 2);
+		double bx = out.getX(i - 1);
+		double by = out.getY(i - 1);
 		
-		Coordinates a = sa.coordinates;
-		Coordinates b = sb.coordinates;
-		Coordinates c = sc.coordinates;
+		final double Cx = cx - bx; // for the last phase
+		final double Cy = cy - by;
 		
-		final Vector2D C = c.subtract(b); // for the last phase
-		
-		boolean clockwise = b.subtract(a).clockwise(c.subtract(a));
+		boolean clockwise = Geometry.clockwise(bx - ax, by - ay, cx - ax, cy - ay);
 		
 		double N = ceil(2 * PI / gamma);
 		double angle = 2 * PI / N;
@@ -129,211 +134,314 @@ public class Truck {
 			angle *= -1;
 		}
 		
-		Vector2D dir = b.subtract(a).getVectorByAngle(beta, S);
-		Coordinates stopover = new Coordinates(b, dir);
-		path.addStopover(i, stopover, sc.quantityToBringIn);
+		double[] dir = new double[2];
+		Geometry.vectorByAngle(bx - ax, by - ay, beta, S, dir);
+		if(!appendVertex(out, bx + dir[0], by + dir[1], cx, cy, q))
+			return;
 		
-		int j;
-		for(j = i + 1; ; j ++) {
-			sa = path.stopovers.get(j - 2);
-			sb = path.stopovers.get(j - 1);
-			sc = path.stopovers.get(j);
-			
-			a = sa.coordinates;
-			b = sb.coordinates;
-			c = sc.coordinates;
+		while(true) {
+			ax = out.getX(out.size() - 2);
+			ay = out.getY(out.size() - 2);
+			bx = out.getLastX();
+			by = out.getLastY();
 			
-			if(angleOk(getAngle(a, b, c)))
+			if(angleOk(Geometry.angle(ax, ay, bx, by, cx, cy)))
 				break;
 			
-			dir = b.subtract(a).getVectorByAngle(angle, S);
-			stopover = new Coordinates(b, dir);
-			path.addStopover(j, stopover, sc.quantityToBringIn);
+			Geometry.vectorByAngle(bx - ax, by - ay, angle, S, dir);
+			if(!appendVertex(out, bx + dir[0], by + dir[1], cx, cy, q))
+				break;
 		}
+		int j = out.size(); // the position of c
 		
-		if(!movementOk(b, c)) {
-			ArrayList <Vector2D> sides = new ArrayList <> ();
-			Vector2D sum = new Vector2D(0.0, 0.0);
+		if(!movementOk(bx, by, cx, cy)) {
+			double[] sidesX = new double[j - i];
+			double[] sidesY = new double[j - i];
+			double sumX = 0.0;
+			double sumY = 0.0;
 			for(int z = i; z < j; z ++) {
-				Coordinates from = path.getCoordinates(z - 1);
-				Coordinates to = path.getCoordinates(z);
+				Geometry.setLength(out.getX(z) - out.getX(z - 1), out.getY(z) - out.getY(z - 1), 1.0, dir);
 				
-				Vector2D side = to.subtract(from).setLengthTo(1.0);
-				
-				sides.add(side);
-				sum = sum.add(side);
+				sidesX[z - i] = dir[0];
+				sidesY[z - i] = dir[1];
+				sumX += dir[0];
+				sumY += dir[1];
 			}
-			double delta = 4 * (pow(sum.scalarProduct(C), 2.0) 
-							- pow(sum.euclideanNorm(), 2.0) * (pow(C.euclideanNorm(), 2.0) - pow(S, 2.0)));
-			double L1 = (2 * sum.scalarProduct(C) - sqrt(delta)) / (2 * pow(sum.euclideanNorm(), 2.0));
-			double L2 = (2 * sum.scalarProduct(C) + sqrt(delta)) / (2 * pow(sum.euclideanNorm(), 2.0));
+			double sumC = Geometry.dot(sumX, sumY, Cx, Cy);
+			double sumNorm = Geometry.norm(sumX, sumY);
+			double delta = 4 * (pow(sumC, 2.0) - pow(sumNorm, 2.0) * (pow(Geometry.norm(Cx, Cy), 2.0) - pow(S, 2.0)));
+			double L1 = (2 * sumC - sqrt(delta)) / (2 * pow(sumNorm, 2.0));
+			double L2 = (2 * sumC + sqrt(delta)) / (2 * pow(sumNorm, 2.0));
 			double L = L1 >= S ? L1 : L2;
 			
 			for(int z = i; z < j; z ++) {
-				Coordinates from = path.getCoordinates(z - 1);
-				
-				Vector2D side = sides.get(z - i);
-				
-				path.stopovers.get(z).coordinates = new Coordinates(from, side.setLengthTo(L));
+				Geometry.setLength(sidesX[z - i], sidesY[z - i], L, dir);
+				out.setCoordinates(z, out.getX(z - 1) + dir[0], out.getY(z - 1) + dir[1]);
 			}
 		}
-		return path.subPath(i - 2, j + 1);
+	}
+	
+	/**
+	 * Appends a vertex of the polygon unless it is equal to the last stopover or to c.
+	 * 
+	 * @return True if the vertex has been appended.
+	 */
+	
+	private static boolean appendVertex(Path out, double vx, double vy, double cx, double cy, long q) {
+		if(Math.abs(vx - cx) < Vector2D.MAX_ERROR_COOR && Math.abs(vy - cy) < Vector2D.MAX_ERROR_COOR)
+			return false;
+		int size = out.size();
+		out.addStopover(vx, vy, q);
+		return out.size() > size;
 	}
 	
 	/**
 	 * For each change it checks if it is acceptable and in case it fixes it.
+	 * 
+	 * The path is streamed into a new one in a single pass: the polygons are appended 
+	 * to the end of the new path (never inserted in the middle), so the time is linear 
+	 * in the length of the fixed path.
 	 */
 	
 	public void fixPath() {
+		if(path.size() < 3)
+			return;
+		Path fixed = path.prefix(2);
 		for(int i = 2; i < path.size(); i ++) {
-			double absAlpha = getAngle(path.getCoordinates(i - 2), path.getCoordinates(i - 1), path.getCoordinates(i));
-			
-			if(angleOk(absAlpha))
-				continue;
+			double cx = path.getX(i);
+			double cy = path.getY(i);
+			long q = path.getQuantityToBringIn(i);
 			
-			// Let's build a regular polygon
+			/*
+			 * Rescaling a polygon moves its last vertex, so the angle is checked again.
+			 */
 			
-			insertRegularPolygon(absAlpha, i);
+			while(true) {
+				int n = fixed.size();
+				double absAlpha = Geometry.angle(fixed.getX(n - 2), fixed.getY(n - 2), fixed.getX(n - 1), fixed.getY(n - 1), cx, cy);
+				
+				if(angleOk(absAlpha))
+					break;
+				
+				// Let's build a regular polygon
+				
+				appendRegularPolygon(fixed, absAlpha, cx, cy, q);
+				if(fixed.size() == n)
+					break;
+			}
+			fixed.addStopover(cx, cy, q);
 		}
+		path = fixed;
 	}
 	
 	public double distance(Path p) {
-		if(path.getLastCoordinates().equals(p.getFirstCoordinates()))
-			return 0.0;
-		return path.getLastCoordinates().distance(p.getFirstCoordinates());
+		return ChainEndpoints.distance(path.getLastX(), path.getLastY(), p.getFirstX(), p.getFirstY());
 	}
 	
 	public double distance(Coordinates c) {
-		return distance(new Path(c));
+		return ChainEndpoints.distance(path.getLastX(), path.getLastY(), c.x, c.y);
 	}
 	
 	/**
-	 * Tries every pair (chain of peaks, chain of peaks), (chain of holes, chain of holes) and 
-	 * swaps them if (and only if) it improves the path.
-	 * 
-	 * It does not arrive to local minimum because we prefer a guarantee about the time 
-	 * required. However going on "usually" does not produce a significant improvement.
+	 * Improves the sequence of chains (alternating peaks and holes) which starts from the 
+	 * current position, with a ChainSequencer (default parameters).
 	 * 
-	 * @param chainsOfPeaks
-	 * @param chainsOfHoles
+	 * @param chains
 	 */
 	
 	public void improveSequenceOfChains(ArrayList <Truck> chains) {
-		for(int i = 0; i < chains.size() - 1; i ++) {
-			for(int j = i + 1; j < chains.size(); j ++) {
-				if(i % 2 != j % 2) // we can't swap peaks with holes
-					continue;
-				
-				double cost = 0.0;
-				if(i == 0) {
-					cost -= distance(chains.get(i).path);
-					cost += distance(chains.get(j).path);
-				} else {
-					cost -= chains.get(i - 1).distance(chains.get(i).path);
-					cost += chains.get(i - 1).distance(chains.get(j).path);
-				}
-				cost -= chains.get(j - 1).distance(chains.get(j).path);
-				cost += chains.get(j - 1).distance(chains.get(i).path);
-				cost -= chains.get(i).distance(chains.get(i + 1).path);
-				cost += chains.get(j).distance(chains.get(i + 1).path);
-				if(j < chains.size() - 1) {
-					cost -= chains.get(j).distance(chains.get(j + 1).path);
-					cost += chains.get(i).distance(chains.get(j + 1).path);
-				}
-				
-				if(cost >= 0.0)
-					continue;
-				
-				Truck chain = chains.get(i);
-				chains.set(i, chains.get(j));
-				chains.set(j, chain);
-			}
-		}
+		improveSequenceOfChains(chains, new ChainSequencer());
 	}
-
+	
+	public void improveSequenceOfChains(ArrayList <Truck> chains, ChainSequencer sequencer) {
+		sequencer.improve(chains, path.getLastX(), path.getLastY());
+	}
+	
+	/**
+	 * The distance from the current position to the cell i of the field. It does not 
+	 * allocate anything because it is called in the inner loops of the searches.
+	 * 
+	 * @param f
+	 * @param i
+	 * @return the distance.
+	 */
+	
+	public double distance(Field f, int i) {
+		double dx = path.getLastX() - f.getX(i);
+		double dy = path.getLastY() - f.getY(i);
+		if(Math.abs(dx) < Vector2D.MAX_ERROR_COOR && Math.abs(dy) < Vector2D.MAX_ERROR_COOR)
+			return 0.0;
+		return Geometry.norm(dx, dy);
+	}
+	
 	public static interface CellProperty {
-		public boolean is(Coordinates c);
+		public boolean is(int i);
 	}
 	
-	public Coordinates getTheNearest(Field f, CellProperty p) {
-		Coordinates nearest = null;
-		for(Coordinates c : f.cells.keySet()) {
-			if(!p.is(c))
+	/**
+	 * Returns the index of the nearest cell satisfying p.
+	 * 
+	 * @param f
+	 * @param p
+	 * @return the index or -1 if there is not such a cell.
+	 */
+	
+	public int getTheNearestCell(Field f, CellProperty p) {
+		int nearest = -1;
+		double nearestDistance = Double.MAX_VALUE;
+		for(int i = 0; i < f.size(); i ++) {
+			if(!p.is(i))
 				continue;
-			if(nearest == null)
-				nearest = c;
-			else if(distance(c) < distance(nearest))
-				nearest = c;
+			double d = distance(f, i);
+			if(nearest == -1 || d < nearestDistance) {
+				nearest = i;
+				nearestDistance = d;
+			}
 		}
 		return nearest;
 	}
-
+	
+	private static Coordinates toCoordinates(Field f, int i) {
+		return i == -1 ? null : f.getCoordinates(i);
+	}
+	
+	public Coordinates getTheNearest(Field f, CellProperty p) {
+		return toCoordinates(f, getTheNearestCell(f, p));
+	}
+	
+	public int getTheNearestHoleCell(Field f) {
+		return f.getTheNearestHole(path.getLastX(), path.getLastY());
+	}
+	
 	public Coordinates getTheNearestHole(Field f) {
-		return getTheNearest(f, (Coordinates c) -> f.isAnHole(c));
+		return toCoordinates(f, getTheNearestHoleCell(f));
+	}
+	
+	public int getTheNearestPeakCell(Field f) {
+		return f.getTheNearestPeak(path.getLastX(), path.getLastY());
 	}
 	
 	public Coordinates getTheNearestPeak(Field f) {
-		return getTheNearest(f, (Coordinates c) -> f.isAPeak(c));
+		return toCoordinates(f, getTheNearestPeakCell(f));
+	}
+	
+	/**
+	 * Returns the k nearest peaks different from the given cells, without modifying the field.
+	 * 
+	 * @param f
+	 * @param k
+	 * @param these the cells to ignore (-1 is ignored).
+	 * @return the indexes sorted by distance (-1 if there are less than k peaks).
+	 */
+	
+	public int[] getTheNearestPeakCellsDifferentFromThese(Field f, int k, int...these) {
+		return f.getTheNearestPeaks(path.getLastX(), path.getLastY(), k, these);
+	}
+	
+	public int[] getTheNearestHoleCellsDifferentFromThese(Field f, int k, int...these) {
+		return f.getTheNearestHoles(path.getLastX(), path.getLastY(), k, these);
+	}
+	
+	public int getTheNearestPeakCellDifferentFromThese(Field f, int...these) {
+		return getTheNearestPeakCellsDifferentFromThese(f, 1, these)[0];
+	}
+	
+	public int getTheNearestHoleCellDifferentFromThese(Field f, int...these) {
+		return getTheNearestHoleCellsDifferentFromThese(f, 1, these)[0];
+	}
+	
+	private static int[] toCells(Field f, Coordinates...these) {
+		int[] cells = new int[these.length];
+		for(int i = 0; i < these.length; i ++)
+			cells[i] = these[i] == null ? -1 : f.indexOf(these[i]);
+		return cells;
 	}
 	
 	public Coordinates getTheNearestPeakDifferentFromThese(Field f, Coordinates...these) {
-		long[] q = new long[these.length];
-		for(int i = 0; i < these.length; i ++) 
-			if(these[i] != null)
-				f.decrement(these[i], q[i] = f.getQuantity(these[i]));
-		Coordinates nearest = getTheNearestPeak(f);
-		for(int i = 0; i < these.length; i ++) 
-			if(these[i] != null)
-				f.increment(these[i], q[i]);
-		return nearest;
+		return toCoordinates(f, getTheNearestPeakCellDifferentFromThese(f, toCells(f, these)));
 	}
 	
 	public Coordinates getTheNearestHoleDifferentFromThese(Field f, Coordinates...these) {
-		long[] q = new long[these.length];
-		for(int i = 0; i < these.length; i ++) 
-			if(these[i] != null)
-				f.decrement(these[i], q[i] = f.getQuantity(these[i]));
-		Coordinates nearest = getTheNearestHole(f);
-		for(int i = 0; i < these.length; i ++) 
-			if(these[i] != null)
-				f.increment(these[i], q[i]);
-		return nearest;
+		return toCoordinates(f, getTheNearestHoleCellDifferentFromThese(f, toCells(f, these)));
 	}
 	
-	public Coordinates getTheMostDistant(Field f, CellProperty p) {
-		Coordinates mostDistant = null;
-		for(Coordinates c : f.cells.keySet()) {
-			if(!p.is(c))
+	/**
+	 * Returns the index of the most distant cell satisfying p.
+	 * 
+	 * @param f
+	 * @param p
+	 * @return the index or -1 if there is not such a cell.
+	 */
+	
+	public int getTheMostDistantCell(Field f, CellProperty p) {
+		int mostDistant = -1;
+		double mostDistantDistance = -1.0;
+		for(int i = 0; i < f.size(); i ++) {
+			if(!p.is(i))
 				continue;
-			if(mostDistant == null)
-				mostDistant = c;
-			else if(distance(c) > distance(mostDistant))
-				mostDistant = c;
+			double d = distance(f, i);
+			if(mostDistant == -1 || d > mostDistantDistance) {
+				mostDistant = i;
+				mostDistantDistance = d;
+			}
 		}
 		return mostDistant;
 	}
 	
+	public Coordinates getTheMostDistant(Field f, CellProperty p) {
+		return toCoordinates(f, getTheMostDistantCell(f, p));
+	}
+	
+	public int getTheMostDistantHoleCell(Field f) {
+		return f.getTheMostDistantHole(path.getLastX(), path.getLastY());
+	}
+	
 	public Coordinates getTheMostDistantHole(Field f) {
-		return getTheMostDistant(f, (Coordinates c) -> f.isAnHole(c));
+		return toCoordinates(f, getTheMostDistantHoleCell(f));
+	}
+	
+	public int getTheMostDistantPeakCell(Field f) {
+		return f.getTheMostDistantPeak(path.getLastX(), path.getLastY());
 	}
 	
 	public Coordinates getTheMostDistantPeak(Field f) {
-		return getTheMostDistant(f, (Coordinates c) -> f.isAPeak(c));
+		return toCoordinates(f, getTheMostDistantPeakCell(f));
+	}
+	
+	/**
+	 * The searches of the same type of the cell in which the truck is.
+	 * 
+	 * @param f
+	 * @return the index or -1 if the truck is not on a peak (hole).
+	 */
+	
+	public int getTheNearestCellOfTheSameTypeDifferent(Field f) {
+		int current = f.indexOf(path.getLastX(), path.getLastY());
+		if(current == -1)
+			return -1;
+		if(f.isAnHole(current))
+			return getTheNearestHoleCellDifferentFromThese(f, current);
+		if(f.isAPeak(current))
+			return getTheNearestPeakCellDifferentFromThese(f, current);
+		return -1;
 	}
 	
 	public Coordinates getTheNearestOfTheSameTypeDifferent(Field f) {
-		if(f.isAnHole(path.getLastCoordinates()))
-			return getTheNearestHoleDifferentFromThese(f, path.getLastCoordinates());
-		if(f.isAPeak(path.getLastCoordinates()))
-			return getTheNearestPeakDifferentFromThese(f, path.getLastCoordinates());
-		return null;
+		return toCoordinates(f, getTheNearestCellOfTheSameTypeDifferent(f));
+	}
+	
+	public int getTheMostDistantCellOfTheSameType(Field f) {
+		int current = f.indexOf(path.getLastX(), path.getLastY());
+		if(current == -1)
+			return -1;
+		if(f.isAnHole(current))
+			return getTheMostDistantHoleCell(f);
+		if(f.isAPeak(current))
+			return getTheMostDistantPeakCell(f);
+		return -1;
 	}
 	
 	public Coordinates getTheMostDistantOfTheSameType(Field f) {
-		if(f.isAnHole(path.getLastCoordinates()))
-			return getTheMostDistantHole(f);
-		if(f.isAPeak(path.getLastCoordinates()))
-			return getTheMostDistantPeak(f);
-		return null;
+		return toCoordinates(f, getTheMostDistantCellOfTheSameType(f));
 	}
 }
@@ -22,7 +22,7 @@ public class Vector2D {
 	}
 	
 	public double euclideanNorm() {
-		return Math.sqrt(scalarProduct(this));
+		return Geometry.norm(x, y);
 	}
 	
 	public Vector2D multiply(double k) {
@@ -46,23 +46,13 @@ public class Vector2D {
 	}
 	
 	public Vector2D rotate(double alpha) {
-		return new Vector2D(x * Math.cos(alpha) - y * Math.sin(alpha), x * Math.sin(alpha) + y * Math.cos(alpha));
+		double cos = Math.cos(alpha);
+		double sin = Math.sin(alpha);
+		return new Vector2D(x * cos - y * sin, x * sin + y * cos);
 	}
 	
 	public double getAngle(Vector2D v) {
-		double cos = scalarProduct(v) / (euclideanNorm() * v.euclideanNorm());
-		
-		/*
-		 * The approximation of floating point representation could make it 
-		 * possible.
-		 */
-		
-		if(cos < -1.0)
-			cos = -1.0;
-		if(cos > 1.0)
-			cos = 1.0;
-		
-		return Math.acos(cos);
+		return Geometry.angle(x, y, v.x, v.y);
 	}
 	
 	public Vector2D getVectorByAngle(double alpha, double length) {
@@ -70,8 +60,7 @@ public class Vector2D {
 	}
 	
 	public boolean clockwise(Vector2D v) {
-		Vector2D orth = getVectorByAngle(Math.PI / 2.0, 1.0);
-		return v.subtract(orth.multiply(-1.0)).euclideanNorm() <= v.subtract(orth).euclideanNorm();
+		return Geometry.clockwise(x, y, v.x, v.y);
 	}
 	
 	public boolean hasX(double x) {
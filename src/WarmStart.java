@@ -0,0 +1,60 @@
+import java.util.Arrays;
+
+/**
+ * What an assignment engine remembers of the last problem it solved, to start the next one
+ * (similar) from there: the potential of each column and the column of each row.
+ * 
+ * Rows and columns change from a problem to the next one, so they are identified by keys in
+ * [0, size) (for the chains: the cell where they end or start). More rows (or columns) can
+ * have the same key: then they share what is remembered.
+ * 
+ * A warm start is not thread safe: every thread (or sequence of problems) needs its own.
+ */
+
+public class WarmStart {
+	
+	final double[] price; // the potential of the columns with each key (NaN if unknown)
+	final int[] match; // for each key of a row, the key of its column (-1 if unknown)
+	final int[] head; // the first column with each key (-1), used only while initializing
+	boolean empty = true;
+	
+	/**
+	 * @param size the number of keys.
+	 */
+	
+	public WarmStart(int size) {
+		price = new double[size];
+		match = new int[size];
+		head = new int[size];
+		Arrays.fill(price, Double.NaN);
+		Arrays.fill(match, -1);
+		Arrays.fill(head, -1);
+	}
+	
+	public int size() {
+		return price.length;
+	}
+	
+	public boolean isEmpty() {
+		return empty;
+	}
+	
+	/**
+	 * Remembers the solution of a problem.
+	 * 
+	 * @param rowKeys the key of each row (-1 for none).
+	 * @param columnKeys the key of each column (-1 for none).
+	 * @param v the potentials of the columns.
+	 * @param x the column of each row.
+	 */
+	
+	void save(int[] rowKeys, int[] columnKeys, double[] v, int[] x) {
+		for(int j = 0; j < columnKeys.length; j ++)
+			if(columnKeys[j] >= 0)
+				price[columnKeys[j]] = v[j];
+		for(int i = 0; i < rowKeys.length; i ++)
+			if(rowKeys[i] >= 0)
+				match[rowKeys[i]] = x[i] >= 0 ? columnKeys[x[i]] : -1;
+		empty = false;
+	}
+}